@@ -0,0 +1,148 @@
+package bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import module6.AirportRank;
+import module6.RouteGraph;
+import parsing.AirportTable;
+import parsing.CsvTokenizer;
+import parsing.ParseFeed;
+import parsing.RouteLoader;
+import parsing.RouteTable;
+
+/**
+ * The data sets the benchmarks run on, built without a PApplet.
+ *
+ * Scale 1 is the bundled airports.dat/routes.dat, from the folder in the
+ * system property bench.data ("data" by default). Larger scales are
+ * synthetic files of that many times the size, written by
+ * FlightDataGenerator with a fixed seed.
+ */
+public class BenchData {
+
+	// seed of the generated data sets, fixed so every run measures the same data
+	public static final long SEED = 1;
+
+	private static final Map<Integer, BenchData> LOADED = new HashMap<Integer, BenchData>();
+
+	public final AirportTable airports;
+	public final RouteTable routes;
+	public final RouteGraph graph;
+	public final AirportRank rank;
+
+	// source and destination row of every resolved route, in route order
+	public final int[] sourceRows;
+	public final int[] destRows;
+
+	private BenchData(AirportTable airports, RouteTable routes) {
+		this.airports = airports;
+		this.routes = routes;
+
+		// join routes to airports the same way AirportMap does
+		int[] sources = new int[routes.size()];
+		int[] dests = new int[routes.size()];
+		int resolved = 0;
+		for (int r = 0; r < routes.size(); r++) {
+			int source = airports.rowOf(routes.getSourceId(r));
+			int dest = airports.rowOf(routes.getDestId(r));
+			if (source < 0 || dest < 0) {
+				continue;
+			}
+			sources[resolved] = source;
+			dests[resolved] = dest;
+			resolved++;
+		}
+		sourceRows = Arrays.copyOf(sources, resolved);
+		destRows = Arrays.copyOf(dests, resolved);
+		graph = new RouteGraph(airports.size(), sourceRows, destRows, resolved);
+		rank = new AirportRank(graph, 2);
+	}
+
+	// returns the data set of the scale, building it on first use
+	public static synchronized BenchData get(int scale) {
+		BenchData data = LOADED.get(scale);
+		if (data == null) {
+			data = new BenchData(parseAirports(file("airports.dat", scale)),
+					RouteLoader.load(file("routes.dat", scale)));
+			LOADED.put(scale, data);
+		}
+		return data;
+	}
+
+	/*
+	 * Returns the data file of the scale. Files of a scale above 1 are
+	 * generated on first use into the temporary directory, and kept there
+	 * for the next run.
+	 */
+	public static File file(String name, int scale) {
+		File directory = new File(System.getProperty("bench.data", "data"));
+		if (scale > 1) {
+			directory = new File(System.getProperty("java.io.tmpdir"), "flights-" + scale + "x-seed" + SEED);
+			if (!directory.isDirectory()) {
+				// written next to it first, so an interrupted run leaves no half data set
+				File partial = new File(directory.getPath() + ".tmp");
+				try {
+					new FlightDataGenerator(scale, SEED).write(partial);
+					if (!partial.renameTo(directory)) {
+						throw new IOException("Could not rename " + partial + " to " + directory);
+					}
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}
+		}
+		File file = new File(directory, name);
+		if (!file.isFile()) {
+			throw new IllegalArgumentException("Could not open " + file);
+		}
+		return file;
+	}
+
+	public static AirportTable parseAirports(File file) {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			return ParseFeed.parseAirportTable(new CsvTokenizer(channel));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/*
+	 * Returns random map views as south, north, west, east quadruples,
+	 * from a few degrees wide up to the whole world, some of them across
+	 * the antimeridian.
+	 */
+	public static float[] viewports(int count, long seed) {
+		Random random = new Random(seed);
+		float[] boxes = new float[count * 4];
+		for (int i = 0; i < count; i++) {
+			// widths spread evenly over zoom levels 1 to 9
+			float width = 360f / (1 << random.nextInt(9));
+			float height = Math.min(170, width / 2);
+			float south = -85 + random.nextFloat() * (170 - height);
+			float west = -180 + random.nextFloat() * 360;
+			boxes[4 * i] = south;
+			boxes[4 * i + 1] = south + height;
+			boxes[4 * i + 2] = west;
+			boxes[4 * i + 3] = wrap(west + Math.min(width, 359.9f));
+		}
+		return boxes;
+	}
+
+	private static float wrap(float lon) {
+		if (lon >= 180) {
+			return lon - 360;
+		}
+		if (lon < -180) {
+			return lon + 360;
+		}
+		return lon;
+	}
+}
@@ -0,0 +1,29 @@
+package bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks of this package with the gc profiler, so every hot
+ * path reports its allocation rate next to its throughput and latency
+ * percentiles. Results are also written to bench-results.json.
+ *
+ * Any JMH command line options can be passed, e.g. a benchmark name
+ * pattern, "-p scale=1" or "-f 1 -wi 3 -i 5" for a quick run.
+ */
+public class BenchmarkRunner {
+
+	public static void main(String[] args) throws Exception {
+		Options options = new OptionsBuilder()
+				.parent(new CommandLineOptions(args))
+				.addProfiler(GCProfiler.class)
+				.resultFormat(ResultFormatType.JSON)
+				.result("bench-results.json")
+				.build();
+		new Runner(options).run();
+	}
+}
@@ -0,0 +1,61 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import module6.AirportGrid;
+import module6.BitMask;
+import module6.IntList;
+
+/**
+ * Viewport culling, AirportGrid.cull() and queryTop() as VisibilityWorker
+ * calls them on every view change. Each invocation culls the next of a
+ * fixed set of random views.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CullingBenchmark {
+
+	private static final int VIEWS = 1024;
+
+	@Param({"1", "10"})
+	public int scale;
+
+	private AirportGrid grid;
+	private float[] views;
+	private int next;
+	private final IntList rows = new IntList();
+	private BitMask inView;
+
+	@Setup
+	public void setup() {
+		BenchData data = BenchData.get(scale);
+		grid = new AirportGrid(data.airports, 1, data.rank.getOrder());
+		views = BenchData.viewports(VIEWS, 42);
+		inView = new BitMask(data.airports.size());
+	}
+
+	@Benchmark
+	public BitMask cull() {
+		int v = 4 * (next++ & (VIEWS - 1));
+		grid.cull(views[v], views[v + 1], views[v + 2], views[v + 3], rows, inView);
+		return inView;
+	}
+
+	@Benchmark
+	public IntList topAirports() {
+		int v = 4 * (next++ & (VIEWS - 1));
+		rows.clear();
+		grid.queryTop(views[v], views[v + 1], views[v + 2], views[v + 3], 5, rows);
+		return rows;
+	}
+}
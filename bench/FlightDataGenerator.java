@@ -0,0 +1,419 @@
+package bench;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Writes synthetic airports.dat and routes.dat files in the OpenFlights
+ * format, scale times the size of the bundled ones.
+ *
+ * The files look like the real data where it matters for the map:
+ * - airports are clustered around a few thousand centers of very
+ *   different size, so some cells of the map are crowded and most are empty
+ * - every airport has a weight drawn from a power law and the endpoints
+ *   of routes are drawn by weight, so a few hubs have most of the routes
+ * - most routes have a route back, and routes stay mostly inside a region
+ * - some names contain commas and quotes, some codes are empty or \N,
+ *   and some routes have \N for an airline or airport id
+ *
+ * Everything is drawn from one java.util.Random, the transcendental
+ * functions are StrictMath's and numbers are written without locale, so
+ * the same scale and seed give the same bytes on every JVM.
+ */
+public class FlightDataGenerator {
+
+	// size of the bundled data
+	public static final int AIRPORTS = 8107;
+	public static final int ROUTES = 67663;
+
+	private static final String[] SYLLABLES = {"ka", "ro", "ma", "dan", "li", "to", "ber", "san",
+			"mi", "gu", "el", "va", "nor", "tha", "ki", "lo", "ra", "sen", "ha", "po", "an", "du",
+			"fer", "is", "ko", "wen", "sta", "bu", "cor", "ne"};
+	private static final String[] KINDS = {"International Airport", "Airport", "Regional Airport",
+			"Airfield", "Air Base", "Municipal Airport", "Airstrip"};
+	private static final String[] AIRCRAFT = {"320", "319", "321", "738", "737", "733", "73H",
+			"772", "77W", "744", "763", "333", "332", "E90", "E70", "CR2", "CR9", "AT7", "DH4",
+			"SF3", "M88", "ERJ", "146", "788", "388"};
+	private static final String[] DST = {"E", "A", "S", "O", "Z", "N", "U"};
+
+	// number of distinct three letter (IATA) and four letter (ICAO) codes
+	private static final int IATA_CODES = 26 * 26 * 26;
+	private static final int ICAO_CODES = 26 * 26 * 26 * 26;
+
+	private final int scale;
+	private final Random random;
+
+	// airports
+	private final int airportCount;
+	private final float[] lat;
+	private final float[] lon;
+	private final int[] cluster;
+
+	// cumulative route weight of the airports, for drawing endpoints
+	private final double[] cumulative;
+
+	// clusters, each with a country and a region of the world
+	private final int clusterCount;
+	private final float[] clusterLat;
+	private final float[] clusterLon;
+	private final float[] clusterSpread;
+	private final int[] clusterCountry;
+	private final int[] clusterRegion;
+
+	// airports of every region, for routes that stay inside it
+	private static final int REGIONS = 12;
+	private final int[][] regionAirports;
+	private final double[][] regionCumulative;
+
+	/*
+	 * @param scale - multiple of the size of the bundled data
+	 * @param seed - seed of the random numbers, the same seed gives the same files
+	 */
+	public FlightDataGenerator(int scale, long seed) {
+		if (scale < 1) {
+			throw new IllegalArgumentException("Scale must be at least 1: " + scale);
+		}
+		this.scale = scale;
+		this.random = new Random(seed);
+		this.airportCount = AIRPORTS * scale;
+
+		clusterCount = 2000 * scale / (int) Math.sqrt(scale);
+		clusterLat = new float[clusterCount];
+		clusterLon = new float[clusterCount];
+		clusterSpread = new float[clusterCount];
+		clusterCountry = new int[clusterCount];
+		clusterRegion = new int[clusterCount];
+		double[] clusterWeight = new double[clusterCount];
+		for (int c = 0; c < clusterCount; c++) {
+			// more land, and more airports, in the north
+			clusterLat[c] = (float) (StrictMath.toDegrees(StrictMath.asin(random.nextDouble() * 1.6 - 0.7)));
+			clusterLon[c] = random.nextFloat() * 360 - 180;
+			clusterSpread[c] = 0.2f + random.nextFloat() * 3;
+			clusterWeight[c] = pareto(1.1);
+			clusterRegion[c] = region(clusterLat[c], clusterLon[c]);
+			// neighbouring clusters often share a country
+			clusterCountry[c] = random.nextInt(4) == 0 ? c : c / 8;
+		}
+		double[] clusterCumulative = cumulate(clusterWeight);
+
+		lat = new float[airportCount];
+		lon = new float[airportCount];
+		cluster = new int[airportCount];
+		double[] weight = new double[airportCount];
+		int[] regionSize = new int[REGIONS];
+		for (int a = 0; a < airportCount; a++) {
+			int c = draw(clusterCumulative);
+			cluster[a] = c;
+			lat[a] = clamp((float) (clusterLat[c] + random.nextGaussian() * clusterSpread[c]), -85, 85);
+			lon[a] = wrap((float) (clusterLon[c] + random.nextGaussian() * clusterSpread[c]));
+			// a long tail: most airports have a route or two, a few have hundreds
+			weight[a] = random.nextInt(3) == 0 ? 0 : pareto(1.2);
+			regionSize[clusterRegion[c]]++;
+		}
+		cumulative = cumulate(weight);
+
+		regionAirports = new int[REGIONS][];
+		regionCumulative = new double[REGIONS][];
+		for (int r = 0; r < REGIONS; r++) {
+			regionAirports[r] = new int[regionSize[r]];
+		}
+		int[] filled = new int[REGIONS];
+		for (int a = 0; a < airportCount; a++) {
+			int r = clusterRegion[cluster[a]];
+			regionAirports[r][filled[r]++] = a;
+		}
+		for (int r = 0; r < REGIONS; r++) {
+			double[] w = new double[regionSize[r]];
+			for (int i = 0; i < w.length; i++) {
+				w[i] = weight[regionAirports[r][i]];
+			}
+			regionCumulative[r] = cumulate(w);
+		}
+	}
+
+	/*
+	 * Writes airports.dat and routes.dat into the directory.
+	 * The airports have to be written first, they draw from the same random numbers.
+	 */
+	public void write(File directory) throws IOException {
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Could not create " + directory);
+		}
+		try (Writer out = open(new File(directory, "airports.dat"))) {
+			writeAirports(out);
+		}
+		try (Writer out = open(new File(directory, "routes.dat"))) {
+			writeRoutes(out);
+		}
+	}
+
+	private static Writer open(File file) throws IOException {
+		return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8), 1 << 16);
+	}
+
+	public void writeAirports(Writer out) throws IOException {
+		StringBuilder line = new StringBuilder(160);
+		for (int a = 0; a < airportCount; a++) {
+			int c = cluster[a];
+			String city = word(random, 2 + random.nextInt(2), 1) + (random.nextInt(40) == 0 ? " City" : "");
+			String name = airportName(city);
+			String country = countryName(clusterCountry[c]);
+
+			line.setLength(0);
+			line.append(id(a)).append(',');
+			quoted(line, name).append(',');
+			quoted(line, city).append(',');
+			quoted(line, country).append(',');
+
+			// IATA codes run out first, then ICAO codes, like in the real data
+			int roll = random.nextInt(10);
+			if (a < IATA_CODES && roll > 0) {
+				quoted(line, letters(a, 3));
+			} else {
+				line.append("\"\"");
+			}
+			line.append(',');
+			if (a < ICAO_CODES && roll < 9) {
+				quoted(line, letters(a, 4));
+			} else {
+				line.append("\\N");
+			}
+			line.append(',');
+
+			appendDecimal(line, lat[a], 6).append(',');
+			appendDecimal(line, lon[a], 6).append(',');
+			line.append(random.nextInt(20) == 0 ? 2000 + random.nextInt(9000) : random.nextInt(1500)).append(',');
+			int zone = Math.round(lon[a] / 15);
+			line.append(zone).append(',');
+			quoted(line, DST[random.nextInt(DST.length)]).append(',');
+			quoted(line, "Region/" + country.replace(' ', '_')).append('\n');
+			out.append(line);
+		}
+	}
+
+	public void writeRoutes(Writer out) throws IOException {
+		int airlineCount = 600 * (int) Math.ceil(Math.sqrt(scale));
+		double[] airlineCumulative = new double[airlineCount];
+		for (int i = 0; i < airlineCount; i++) {
+			airlineCumulative[i] = pareto(1.0);
+		}
+		airlineCumulative = cumulate(airlineCumulative);
+
+		int target = ROUTES * scale;
+		StringBuilder line = new StringBuilder(80);
+		int written = 0;
+		while (written < target) {
+			int source = draw(cumulative);
+			int dest;
+			if (random.nextInt(4) > 0) {
+				// most routes stay in the region of the source
+				int r = clusterRegion[cluster[source]];
+				dest = regionAirports[r][draw(regionCumulative[r])];
+			} else {
+				dest = draw(cumulative);
+			}
+			if (dest == source) {
+				continue;
+			}
+			int airline = draw(airlineCumulative);
+			String equipment = equipment();
+			boolean codeshare = random.nextInt(5) == 0;
+			int stops = random.nextInt(500) == 0 ? 1 : 0;
+
+			writeRoute(out, line, airline, source, dest, codeshare, stops, equipment);
+			written++;
+			// most routes are flown both ways by the same airline
+			if (written < target && random.nextInt(10) < 9) {
+				writeRoute(out, line, airline, dest, source, codeshare, stops, equipment);
+				written++;
+			}
+		}
+	}
+
+	private void writeRoute(Writer out, StringBuilder line, int airline, int source, int dest,
+			boolean codeshare, int stops, String equipment) throws IOException {
+		line.setLength(0);
+		line.append(letters(airline, 2)).append(',');
+		// a few airlines and airports are not in the OpenFlights database
+		if (random.nextInt(200) == 0) {
+			line.append("\\N");
+		} else {
+			line.append(airline + 1);
+		}
+		line.append(',');
+		endpoint(line, source).append(',');
+		endpoint(line, dest).append(',');
+		line.append(codeshare ? "Y" : "").append(',');
+		line.append(stops).append(',');
+		line.append(equipment).append('\n');
+		out.append(line);
+	}
+
+	// code and id of a route's airport; past the four letter codes an airport has no code, like in airports.dat
+	private StringBuilder endpoint(StringBuilder line, int airport) {
+		if (airport < IATA_CODES) {
+			line.append(letters(airport, 3));
+		} else if (airport < ICAO_CODES) {
+			line.append(letters(airport, 4));
+		} else {
+			line.append("\\N");
+		}
+		line.append(',');
+		if (random.nextInt(150) == 0) {
+			return line.append("\\N");
+		}
+		return line.append(id(airport));
+	}
+
+	private String equipment() {
+		int count = 1 + (random.nextInt(4) == 0 ? random.nextInt(3) : 0);
+		StringBuilder codes = new StringBuilder();
+		for (int i = 0; i < count; i++) {
+			if (i > 0) {
+				codes.append(' ');
+			}
+			codes.append(AIRCRAFT[random.nextInt(AIRCRAFT.length)]);
+		}
+		return codes.toString();
+	}
+
+	private String airportName(String city) {
+		String kind = KINDS[random.nextInt(KINDS.length)];
+		int roll = random.nextInt(20);
+		if (roll == 0) {
+			// commas inside a quoted field
+			return city + ", " + word(random, 2, 1) + " " + kind;
+		}
+		if (roll == 1) {
+			// a doubled quote inside a quoted field
+			return word(random, 2, 1) + " \"\"" + word(random, 2, 0) + "\"\" " + kind;
+		}
+		if (roll < 6) {
+			return word(random, 2, 1) + " " + word(random, 3, 1) + " " + kind;
+		}
+		return city + " " + kind;
+	}
+
+	// country names are made from their number, so they repeat across clusters
+	private static String countryName(int country) {
+		Random names = new Random(country * 7919L);
+		String name = word(names, 2 + names.nextInt(3), 1);
+		return names.nextInt(10) == 0 ? name + ", Republic of" : name;
+	}
+
+	// OpenFlights ids start at 1 and have gaps
+	private static int id(int airport) {
+		return airport + 1 + airport / 97;
+	}
+
+	private static String word(Random random, int syllables, int capitals) {
+		StringBuilder word = new StringBuilder();
+		for (int i = 0; i < syllables; i++) {
+			word.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+		}
+		if (capitals > 0) {
+			word.setCharAt(0, Character.toUpperCase(word.charAt(0)));
+		}
+		return word.toString();
+	}
+
+	// the number in base 26, written with the letters A to Z
+	private static String letters(int n, int length) {
+		char[] code = new char[length];
+		for (int i = length - 1; i >= 0; i--) {
+			code[i] = (char) ('A' + n % 26);
+			n /= 26;
+		}
+		return new String(code);
+	}
+
+	private static StringBuilder quoted(StringBuilder line, String value) {
+		return line.append('"').append(value).append('"');
+	}
+
+	// writes the value with the digits after the point, independent of the locale
+	private static StringBuilder appendDecimal(StringBuilder line, float value, int digits) {
+		long factor = 1;
+		for (int i = 0; i < digits; i++) {
+			factor *= 10;
+		}
+		long scaled = Math.round(Math.abs((double) value) * factor);
+		if (value < 0 && scaled != 0) {
+			line.append('-');
+		}
+		line.append(scaled / factor).append('.');
+		String fraction = Long.toString(scaled % factor);
+		for (int i = fraction.length(); i < digits; i++) {
+			line.append('0');
+		}
+		return line.append(fraction);
+	}
+
+	// a Pareto distributed number, at least 1, with a heavier tail for smaller alpha
+	private double pareto(double alpha) {
+		return StrictMath.pow(1 - random.nextDouble(), -1 / alpha);
+	}
+
+	// index drawn with probability proportional to its weight
+	private int draw(double[] cumulative) {
+		int i = Arrays.binarySearch(cumulative, random.nextDouble() * cumulative[cumulative.length - 1]);
+		i = i < 0 ? -i - 1 : i + 1;
+		return Math.min(i, cumulative.length - 1);
+	}
+
+	private static double[] cumulate(double[] weight) {
+		double[] sums = new double[Math.max(1, weight.length)];
+		double sum = 0;
+		for (int i = 0; i < weight.length; i++) {
+			sum += weight[i];
+			sums[i] = sum;
+		}
+		return sums;
+	}
+
+	// one of REGIONS bands of longitude and latitude
+	private static int region(float lat, float lon) {
+		int band = lat < -15 ? 0 : lat < 30 ? 1 : 2;
+		return band * 4 + Math.min(3, (int) ((lon + 180) / 90));
+	}
+
+	private static float clamp(float value, float min, float max) {
+		return Math.max(min, Math.min(max, value));
+	}
+
+	private static float wrap(float lon) {
+		while (lon >= 180) {
+			lon -= 360;
+		}
+		while (lon < -180) {
+			lon += 360;
+		}
+		return lon;
+	}
+
+	/*
+	 * Writes a data set: FlightDataGenerator <directory> [scale] [seed]
+	 * e.g. FlightDataGenerator data-100x 100 1
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.err.println("Usage: FlightDataGenerator <directory> [scale] [seed]");
+			System.exit(1);
+		}
+		File directory = new File(args[0]);
+		int scale = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+		long seed = args.length > 2 ? Long.parseLong(args[2]) : 1;
+
+		long start = System.nanoTime();
+		new FlightDataGenerator(scale, seed).write(directory);
+		System.out.println("Wrote " + AIRPORTS * scale + " airports and " + ROUTES * scale
+				+ " routes to " + directory + " in " + (System.nanoTime() - start) / 1000000 + " ms");
+	}
+}
@@ -0,0 +1,81 @@
+package bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import module6.BitMask;
+import module6.MapProjection;
+import module6.ScreenGrid;
+import module6.ScreenPositions;
+import parsing.AirportTable;
+
+/**
+ * Hover hit-testing: ScreenGrid.index(), which VisibilityWorker calls to
+ * rebuild the hover grid from the batch-projected airport positions on
+ * every view change (index), and ScreenGrid.nearest(), which
+ * AirportMap.selectMarkerIfHover() calls on every mouse move (grid). The
+ * view is the whole world on a 1024 pixel wide map, the mouse positions
+ * are random.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class HoverBenchmark {
+
+	private static final int POSITIONS = 1024;
+	private static final float MAP_SIZE = 1024;
+
+	// pick radius of an airport marker in pixels
+	private static final float RADIUS = 5;
+
+	@Param({"1", "10"})
+	public int scale;
+
+	private BitMask shown;
+	private ScreenPositions positions;
+	private float[] mouse;
+	private int next;
+	private final ScreenGrid grid = new ScreenGrid(16);
+
+	@Setup
+	public void setup() {
+		BenchData data = BenchData.get(scale);
+		AirportTable airports = data.airports;
+		shown = new BitMask(airports.size());
+		shown.setAll();
+
+		MapProjection projection = new MapProjection();
+		projection.set(MAP_SIZE, MAP_SIZE, 0, 0);
+		positions = new ScreenPositions(MapProjection.mercatorX(airports), MapProjection.mercatorY(airports));
+		positions.update(projection);
+		index();
+
+		Random random = new Random(11);
+		mouse = new float[2 * POSITIONS];
+		for (int i = 0; i < mouse.length; i++) {
+			mouse[i] = random.nextFloat() * MAP_SIZE;
+		}
+	}
+
+	@Benchmark
+	public ScreenGrid index() {
+		grid.index(0, 0, MAP_SIZE, MAP_SIZE, shown, positions);
+		return grid;
+	}
+
+	// returns the row of the nearest airport under the mouse, or -1
+	@Benchmark
+	public int grid() {
+		int m = 2 * (next++ & (POSITIONS - 1));
+		return grid.nearest(mouse[m], mouse[m + 1], RADIUS);
+	}
+}
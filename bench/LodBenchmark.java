@@ -0,0 +1,58 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import module6.BitMask;
+import module6.LodPyramid;
+
+/**
+ * Level of detail, what the app does to limit the airports shown:
+ * building the pyramid once when the data is loaded, and LodPyramid.show(),
+ * which VisibilityWorker calls on every view change.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LodBenchmark {
+
+	private static final int[] BUDGETS = {150, 300, 600, 1200, 2500};
+
+	@Param({"1", "10"})
+	public int scale;
+
+	private BenchData data;
+	private LodPyramid pyramid;
+	private BitMask shown;
+	private int step;
+
+	@Setup
+	public void setup() {
+		data = BenchData.get(scale);
+		pyramid = build();
+		shown = new BitMask(data.airports.size());
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public LodPyramid build() {
+		return new LodPyramid(data.airports, data.rank.getOrder(), 24, 5, BUDGETS);
+	}
+
+	// walks the zoom levels 0 to full detail and back, one level per invocation
+	@Benchmark
+	public BitMask switchLevel() {
+		int full = pyramid.getFullDetailZoom();
+		int next = step++ % (2 * full);
+		pyramid.show(next <= full ? next : 2 * full - next, shown);
+		return shown;
+	}
+}
@@ -0,0 +1,65 @@
+package bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import parsing.AirportTable;
+import parsing.ColumnTable;
+import parsing.CsvTokenizer;
+import parsing.ParseFeed;
+import parsing.RouteLoader;
+import parsing.RouteTable;
+
+/**
+ * Parsing airports.dat and routes.dat, what setup() does when there is no
+ * snapshot, and loading airports.dat through its TableSchema. One
+ * invocation parses a whole file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ParseBenchmark {
+
+	@Param({"1", "10"})
+	public int scale;
+
+	private File airports;
+	private File routes;
+
+	@Setup
+	public void setup() {
+		airports = BenchData.file("airports.dat", scale);
+		routes = BenchData.file("routes.dat", scale);
+	}
+
+	@Benchmark
+	public AirportTable parseAirports() throws IOException {
+		try (FileChannel channel = FileChannel.open(airports.toPath(), StandardOpenOption.READ)) {
+			return ParseFeed.parseAirportTable(new CsvTokenizer(channel));
+		}
+	}
+
+	@Benchmark
+	public ColumnTable loadAirportColumns() throws IOException {
+		try (FileChannel channel = FileChannel.open(airports.toPath(), StandardOpenOption.READ)) {
+			return ParseFeed.airportSchema().load(new CsvTokenizer(channel));
+		}
+	}
+
+	@Benchmark
+	public RouteTable parseRoutes() {
+		return RouteLoader.load(routes);
+	}
+}
@@ -0,0 +1,74 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import module6.MapProjection;
+import module6.ScreenPositions;
+import parsing.AirportTable;
+
+/**
+ * Projecting every airport to the screen, what VisibilityWorker does once
+ * per view change for the airports it publishes: from the coordinates of the
+ * table one row at a time (perRow), against the batch projection of the
+ * precomputed Mercator coordinates in ScreenPositions (batch). Each
+ * invocation projects for the next of a fixed set of zoom and pan
+ * transforms.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ProjectionBenchmark {
+
+	private static final int VIEWS = 64;
+
+	@Param({"1", "10"})
+	public int scale;
+
+	private AirportTable airports;
+	private final MapProjection[] projections = new MapProjection[VIEWS];
+	private ScreenPositions positions;
+	private float[] screenX;
+	private float[] screenY;
+	private int next;
+
+	@Setup
+	public void setup() {
+		BenchData data = BenchData.get(scale);
+		airports = data.airports;
+		positions = new ScreenPositions(MapProjection.mercatorX(airports), MapProjection.mercatorY(airports));
+		screenX = new float[airports.size()];
+		screenY = new float[airports.size()];
+
+		// a 1024 pixel wide map at zoom levels 0 to 7, panned by a fraction of the world
+		for (int v = 0; v < VIEWS; v++) {
+			float world = 1024 << (v & 7);
+			projections[v] = new MapProjection();
+			projections[v].set(world, world, -world * v / VIEWS, -world * v / (2 * VIEWS));
+		}
+	}
+
+	@Benchmark
+	public float[] perRow() {
+		MapProjection projection = projections[next++ & (VIEWS - 1)];
+		for (int row = 0; row < airports.size(); row++) {
+			screenX[row] = projection.screenX(MapProjection.mercatorX(airports.getLon(row)));
+			screenY[row] = projection.screenY(MapProjection.mercatorY(airports.getLat(row)));
+		}
+		return screenX;
+	}
+
+	@Benchmark
+	public ScreenPositions batch() {
+		positions.update(projections[next++ & (VIEWS - 1)]);
+		return positions;
+	}
+}
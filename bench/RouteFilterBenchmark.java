@@ -0,0 +1,65 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import module6.AirportGrid;
+import module6.BitMask;
+import module6.IntList;
+import module6.RouteGraph;
+
+/**
+ * Route filtering, what VisibilityWorker does on every view change:
+ * select the routes whose airports are both displayed. The displayed
+ * airports of a fixed set of random views are computed up front, so only
+ * the filtering is measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RouteFilterBenchmark {
+
+	private static final int VIEWS = 64;
+
+	@Param({"1", "10"})
+	public int scale;
+
+	private RouteGraph graph;
+	private BitMask[] displayed;
+	private BitMask routeShown;
+	private int next;
+
+	@Setup
+	public void setup() {
+		BenchData data = BenchData.get(scale);
+		graph = data.graph;
+		routeShown = new BitMask(graph.routeCount());
+
+		AirportGrid grid = new AirportGrid(data.airports, 1, data.rank.getOrder());
+		float[] views = BenchData.viewports(VIEWS, 7);
+		IntList rows = new IntList();
+		displayed = new BitMask[VIEWS];
+		for (int v = 0; v < VIEWS; v++) {
+			rows.clear();
+			grid.query(views[4 * v], views[4 * v + 1], views[4 * v + 2], views[4 * v + 3], rows);
+			displayed[v] = new BitMask(data.airports.size());
+			for (int i = 0; i < rows.size(); i++) {
+				displayed[v].set(rows.get(i));
+			}
+		}
+	}
+
+	@Benchmark
+	public BitMask selectEdges() {
+		graph.selectEdges(displayed[next++ & (VIEWS - 1)], routeShown);
+		return routeShown;
+	}
+}
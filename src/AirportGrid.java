@@ -0,0 +1,294 @@
+package module6;
+
+import java.util.Arrays;
+
+import parsing.AirportTable;
+
+/**
+ * A uniform latitude/longitude grid over the airports of an AirportTable.
+ *
+ * Cells are packed like a compressed sparse row matrix: the airports of
+ * cell c are items[cellStart[c]] to items[cellStart[c+1]-1]. Cells are
+ * numbered south to north, then west to east, so a query returns the rows
+ * of one band of latitude before the next one. A query only visits the
+ * cells that overlap the box, and only tests single airports in the cells
+ * on its border, so its cost follows the size of the result rather than
+ * the size of the table.
+ *
+ * Inside a cell, airports are kept in the priority order given to the
+ * constructor, which lets queryTop() merge the cells instead of sorting
+ * every airport in the box.
+ */
+public class AirportGrid {
+
+	private final AirportTable table;
+	private final float cellSize;
+	private final int cols;
+	private final int rows;
+	private final int[] cellStart;
+	private final int[] items;
+
+	// position of every row in the priority order
+	private final int[] priorityOf;
+
+	// longitude ranges of the current query, two if it crosses the antimeridian
+	private final float[] rangeWest = new float[2];
+	private final float[] rangeEast = new float[2];
+	private int ranges;
+	private float south;
+	private float north;
+
+	// cursors of the cells merged by queryTop, and a heap of cursor slots
+	private int[] slotNext = new int[64];
+	private int[] slotEnd = new int[64];
+	private int[] slotRange = new int[64];
+	private boolean[] slotBorder = new boolean[64];
+	private int[] heap = new int[64];
+	private int slots;
+	private int heapSize;
+
+	/*
+	 * @param table - airports to index
+	 * @param cellSize - width and height of a cell in degrees
+	 */
+	public AirportGrid(AirportTable table, float cellSize) {
+		this(table, cellSize, LodPyramid.tableOrder(table));
+	}
+
+	/*
+	 * @param table - airports to index
+	 * @param cellSize - width and height of a cell in degrees
+	 * @param priority - all rows of the table, the ones queryTop() prefers first
+	 */
+	public AirportGrid(AirportTable table, float cellSize, int[] priority) {
+		this.table = table;
+		this.cellSize = cellSize;
+		this.cols = (int) Math.ceil(360 / cellSize);
+		this.rows = (int) Math.ceil(180 / cellSize);
+
+		int n = table.size();
+		int[] cellOf = new int[n];
+		cellStart = new int[rows * cols + 1];
+		for (int i = 0; i < n; i++) {
+			cellOf[i] = cell(row(table.getLat(i)), col(table.getLon(i)));
+			cellStart[cellOf[i] + 1]++;
+		}
+		for (int c = 0; c < rows * cols; c++) {
+			cellStart[c + 1] += cellStart[c];
+		}
+
+		// filling the cells in priority order keeps each cell sorted by priority
+		items = new int[n];
+		priorityOf = new int[n];
+		int[] next = new int[rows * cols];
+		System.arraycopy(cellStart, 0, next, 0, rows * cols);
+		for (int p = 0; p < n; p++) {
+			int i = priority[p];
+			priorityOf[i] = p;
+			items[next[cellOf[i]]++] = i;
+		}
+	}
+
+	private int row(float lat) {
+		return Math.max(0, Math.min(rows - 1, (int) Math.floor((lat + 90) / cellSize)));
+	}
+
+	private int col(float lon) {
+		return Math.max(0, Math.min(cols - 1, (int) Math.floor((lon + 180) / cellSize)));
+	}
+
+	private int cell(int row, int col) {
+		return row * cols + col;
+	}
+
+	// brings a longitude into [-180, 180)
+	static float wrapLongitude(float lon) {
+		float wrapped = (lon + 180) % 360;
+		if (wrapped < 0) {
+			wrapped += 360;
+		}
+		return wrapped - 180;
+	}
+
+	/*
+	 * Adds the rows of all airports inside the box to out.
+	 *
+	 * West and east may lie outside [-180, 180], as they do when the map
+	 * is panned across the antimeridian; a box with west > east after
+	 * wrapping is split into two ranges, and a box 360 degrees or wider
+	 * covers every longitude.
+	 *
+	 * @param south, north - latitude range of the box
+	 * @param west, east - longitude range of the box, west to east
+	 * @param out - list the rows are added to
+	 */
+	public void query(float south, float north, float west, float east, IntList out) {
+		visitCells(south, north, west, east, out);
+	}
+
+	/*
+	 * Culls the airports to the box, read like in query().
+	 *
+	 * @param rows - cleared, then receives the rows inside the box
+	 * @param inside - set to exactly the rows inside the box
+	 */
+	public void cull(float south, float north, float west, float east, IntList rows, BitMask inside) {
+		rows.clear();
+		visitCells(south, north, west, east, rows);
+		inside.clearAll();
+		for (int i = 0; i < rows.size(); i++) {
+			inside.set(rows.get(i));
+		}
+	}
+
+	/*
+	 * Adds the rows of the k airports inside the box that come first in the
+	 * priority order to out, best first. The box is read like in query().
+	 * The cells overlapping the box are merged through a heap, so the cost
+	 * is the number of cells plus k log(cells), whatever the box contains.
+	 */
+	public void queryTop(float south, float north, float west, float east, int k, IntList out) {
+		slots = 0;
+		heapSize = 0;
+		visitCells(south, north, west, east, null);
+
+		for (int i = heapSize / 2 - 1; i >= 0; i--) {
+			siftDown(i);
+		}
+		int taken = 0;
+		while (taken < k && heapSize > 0) {
+			int slot = heap[0];
+			out.add(items[slotNext[slot]]);
+			taken++;
+			slotNext[slot]++;
+			if (slotBorder[slot]) {
+				skipOutside(slot);
+			}
+			if (slotNext[slot] == slotEnd[slot]) {
+				heap[0] = heap[--heapSize];
+			}
+			siftDown(0);
+		}
+	}
+
+	// loops over the cells overlapping the box, either collecting their
+	// airports into out or, if out is null, adding them as slots for queryTop
+	private void visitCells(float south, float north, float west, float east, IntList out) {
+		if (south > north) {
+			return;
+		}
+		this.south = south;
+		this.north = north;
+
+		if (east - west >= 360) {
+			rangeWest[0] = -180;
+			rangeEast[0] = 180;
+			ranges = 1;
+		} else {
+			float w = wrapLongitude(west);
+			float e = wrapLongitude(east);
+			if (w <= e) {
+				rangeWest[0] = w;
+				rangeEast[0] = e;
+				ranges = 1;
+			} else {
+				rangeWest[0] = w;
+				rangeEast[0] = 180;
+				rangeWest[1] = -180;
+				rangeEast[1] = e;
+				ranges = 2;
+			}
+		}
+
+		int r0 = row(south);
+		int r1 = row(north);
+		for (int r = r0; r <= r1; r++) {
+			boolean latInterior = r > r0 && r < r1;
+			for (int k = 0; k < ranges; k++) {
+				int c0 = col(rangeWest[k]);
+				int c1 = col(rangeEast[k]);
+				for (int c = c0; c <= c1; c++) {
+					int cell = cell(r, c);
+					if (cellStart[cell] == cellStart[cell + 1]) {
+						continue;
+					}
+					// the whole cell is inside the box unless it is on the border
+					boolean border = !(latInterior && c > c0 && c < c1);
+					if (out == null) {
+						addSlot(cell, k, border);
+					} else if (!border) {
+						for (int i = cellStart[cell]; i < cellStart[cell + 1]; i++) {
+							out.add(items[i]);
+						}
+					} else {
+						for (int i = cellStart[cell]; i < cellStart[cell + 1]; i++) {
+							if (isInside(items[i], k)) {
+								out.add(items[i]);
+							}
+						}
+					}
+				}
+			}
+		}
+	}
+
+	private boolean isInside(int item, int range) {
+		float lat = table.getLat(item);
+		float lon = table.getLon(item);
+		return lat >= south && lat <= north && lon >= rangeWest[range] && lon <= rangeEast[range];
+	}
+
+	private void addSlot(int cell, int range, boolean border) {
+		if (slots == slotNext.length) {
+			int size = slots * 2;
+			slotNext = Arrays.copyOf(slotNext, size);
+			slotEnd = Arrays.copyOf(slotEnd, size);
+			slotRange = Arrays.copyOf(slotRange, size);
+			slotBorder = Arrays.copyOf(slotBorder, size);
+			heap = Arrays.copyOf(heap, size);
+		}
+		int slot = slots;
+		slotNext[slot] = cellStart[cell];
+		slotEnd[slot] = cellStart[cell + 1];
+		slotRange[slot] = range;
+		slotBorder[slot] = border;
+		if (border) {
+			skipOutside(slot);
+		}
+		if (slotNext[slot] < slotEnd[slot]) {
+			slots++;
+			heap[heapSize++] = slot;
+		}
+	}
+
+	// moves the cursor of a border cell to its next airport inside the box
+	private void skipOutside(int slot) {
+		while (slotNext[slot] < slotEnd[slot] && !isInside(items[slotNext[slot]], slotRange[slot])) {
+			slotNext[slot]++;
+		}
+	}
+
+	private int headPriority(int slot) {
+		return priorityOf[items[slotNext[slot]]];
+	}
+
+	private void siftDown(int i) {
+		while (true) {
+			int left = 2 * i + 1;
+			if (left >= heapSize) {
+				return;
+			}
+			int best = left;
+			if (left + 1 < heapSize && headPriority(heap[left + 1]) < headPriority(heap[left])) {
+				best = left + 1;
+			}
+			if (headPriority(heap[i]) <= headPriority(heap[best])) {
+				return;
+			}
+			int tmp = heap[i];
+			heap[i] = heap[best];
+			heap[best] = tmp;
+			i = best;
+		}
+	}
+}
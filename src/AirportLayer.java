@@ -0,0 +1,86 @@
+package module6;
+
+import processing.core.PApplet;
+import processing.core.PGraphics;
+
+/**
+ * Draws the displayed airports as one batch into an offscreen buffer.
+ *
+ * Like RouteLayer, the buffer is only drawn again when there is something
+ * new to draw: a Visibility from the worker, or a change of the markers'
+ * MarkerState, see getVersion(). Every other frame only copies the buffer
+ * onto the screen. Drawing visits the airports the visibility displays,
+ * not every row of the table.
+ *
+ * Airports whose markers have an Override are left out, the caller draws
+ * those few one by one every frame, like the highlighted ones on top.
+ */
+public class AirportLayer {
+
+	private final PGraphics buffer;
+	private final float left;
+	private final float top;
+
+	private VisibilityWorker.Visibility visibility;
+	private boolean rendered;
+	private int renderedVersion;
+
+	/*
+	 * @param p - PApplet being used
+	 * @param left, top, width, height - area of the map on the screen
+	 */
+	public AirportLayer(PApplet p, float left, float top, int width, int height) {
+		this.buffer = p.createGraphics(width, height);
+		this.left = left;
+		this.top = top;
+	}
+
+	/*
+	 * Replaces the airports to draw, the buffer keeps its picture until the
+	 * next draw(). The visibility must not be changed while the layer has it.
+	 */
+	public void setVisibility(VisibilityWorker.Visibility visibility) {
+		this.visibility = visibility;
+		rendered = false;
+	}
+
+	/*
+	 * Draws the airports into the buffer, if they or their state changed
+	 * since the last call, and the buffer onto the screen.
+	 *
+	 * @param pg - graphics of the screen
+	 * @param state - flags and style of the airport markers
+	 */
+	public void draw(PGraphics pg, MarkerState state) {
+		if (visibility == null) {
+			return;
+		}
+		if (!rendered || renderedVersion != state.getVersion()) {
+			render(state);
+			rendered = true;
+			renderedVersion = state.getVersion();
+		}
+		pg.image(buffer, left, top);
+	}
+
+	private void render(MarkerState state) {
+		BitMask displayed = visibility.airportDisplayed;
+		ScreenPositions positions = visibility.airportPositions;
+		float[] x = positions.getScreenX();
+		float[] y = positions.getScreenY();
+		float right = left + buffer.width;
+		float bottom = top + buffer.height;
+
+		buffer.beginDraw();
+		buffer.clear();
+		state.applyStyle(buffer, false);
+		for (int row = displayed.nextSetBit(0); row >= 0; row = displayed.nextSetBit(row + 1)) {
+			// markers hidden since the visibility was computed are left out too
+			if (state.shown.get(row) && !state.overridden.get(row)
+					&& positions.isInside(row, left, top, right, bottom)) {
+				buffer.ellipse(x[row] - left, y[row] - top, AirportMarker.SIZE, AirportMarker.SIZE);
+			}
+		}
+		buffer.endDraw();
+	}
+}
@@ -1,28 +1,19 @@
 package module6;
 
-import java.util.ArrayList;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
 import java.util.Arrays;
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.Enumeration;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Properties;
-import java.util.stream.Collectors;
+import java.util.Objects;
 
 import de.fhpotsdam.unfolding.UnfoldingMap;
-import de.fhpotsdam.unfolding.data.PointFeature;
-import de.fhpotsdam.unfolding.data.ShapeFeature;
-import de.fhpotsdam.unfolding.marker.AbstractMarker;
-import de.fhpotsdam.unfolding.marker.Marker;
-import de.fhpotsdam.unfolding.marker.SimpleLinesMarker;
-import de.fhpotsdam.unfolding.marker.SimplePointMarker;
 import de.fhpotsdam.unfolding.utils.MapUtils;
+import de.fhpotsdam.unfolding.utils.ScreenPosition;
 import de.fhpotsdam.unfolding.geo.Location;
-import parsing.ParseFeed;
+import parsing.AirportTable;
+import parsing.RouteTable;
 import processing.core.PApplet;
 import processing.core.PConstants;
-import processing.core.PVector;
 
 /** An applet that shows airports (and routes)
  * on a world map.  
@@ -37,14 +28,95 @@ public class AirportMap extends PApplet {
 	 */
 	private static final long serialVersionUID = 1L;
 	UnfoldingMap map;
-	private List<Marker> airportList;
-	List<Marker> routeList;
-	
-	private Marker lastSelected;
-	private CommonMarker lastClicked;
+	private AirportTable airports;
+	
+	// flags and style of the airport and route markers, the markers themselves
+	// are flyweights created for the airport or route that is hovered or clicked
+	private MarkerState airportMarkers;
+	private MarkerState routeMarkers;
+	
+	// what the current view shows, computed by the worker and taken over at the
+	// start of a frame: masks, hover and click grids, route lines and info strings
+	private VisibilityWorker visibilityWorker;
+	private VisibilityWorker.Visibility visibility;
+	
+	// distance in pixels within which the mouse hovers an airport,
+	// and within which a click picks a route
+	public float hoverRadius = 10;
+	public float routeClickTolerance = 5;
+	
+	// displayed airports and shown routes drawn once per view change into offscreen buffers
+	private AirportLayer airportLayer;
+	private RouteLayer routeLayer;
+	public int routeColor;
+	public int routeHighlightColor;
+	public float routeWeight = 1;
+	
+	// memory for the great-circle arcs of the routes the worker lays out,
+	// and for those of the route markers, which are drawn on this thread
+	public long arcCacheBytes = 32 << 20;
+	public long markerArcCacheBytes = 1 << 20;
+	private ArcCache markerArcs;
+	
+	// the edges of the map on the screen, which do not move with the view;
+	// the screen positions of the airports come with the visibility
+	private float[] edges;
+
+	private RouteTable routes;
+	private RoutePairs routePairs;
+	
+	// visibility with one bit per airport or route row, the shown masks of the marker states:
+	// airports of the level of detail and routes with both airports displayed,
+	// their bits are swapped in from the worker's results
+	private BitMask airportShown;
+	private BitMask routeShown;
+	
+	private AirportMarker lastSelected;
+	private RouteMarker clickedRoute;
+	private String[] clickedRouteInfo;
+	
+	// derived data is only recomputed when the view version changes
+	private ViewState viewState = new ViewState();
+	private long requestedVersion = -1;
+	
+	// title box of the hovered airport, laid out with the view
+	// the title is the row's slice of the table's title chars, -1 for none
+	private int selectedTitleRow = -1;
+	private float selectedTitleWidth;
+	private float selectedX;
+	private float selectedY;
 	
 	public int spacing = 50;
 	public int infoBoxWidth;
+	
+	// level of detail: size of a thinning cell in pixels, first zoom level
+	// that shows every airport and the max amount of airports per zoom level
+	public int lodCellPixels = 24;
+	public int lodFullDetailZoom = 5;
+	public int[] lodBudgets = {150, 300, 600, 1200, 2500};
+	
+	// airports ranked by route degree, and how many of the best to list
+	public float rankDestinationWeight = 2;
+	public int topAirportsListed = 5;
+	
+	// loads the data in the background, the data fields stay null until it is handed over
+	private FlightLoader loader;
+	private FlightLoader.AirportSnapshot loadedAirports;
+	private FlightLoader.RouteSnapshot loadedRoutes;
+	
+	// phases of a frame timed by the profiler, shown at the bottom of the info box
+	private static final int PHASE_MAP = 0;
+	private static final int PHASE_VIEW = 1;
+	private static final int PHASE_VISIBILITY = 2;
+	private static final int PHASE_INFO_BOX = 3;
+	private static final int PHASE_TITLES = 4;
+	private static final int PHASE_ROUTE_LAYER = 5;
+	private FrameProfiler profiler = new FrameProfiler(
+			"map.draw", "updateView", "visibility (worker)", "drawInfoBox", "titles", "routeLayer");
+	public int profileRefreshFrames = 30;
+	private String[] profileInfo = new String[0];
+	// outcome of the last export of the frame times, shown above the timings
+	private String exportInfo;
 
 	public void setup() {
 		
@@ -66,56 +138,21 @@ public class AirportMap extends PApplet {
 		
 		
 		
-		// get features from airport data
-		List<PointFeature> features = ParseFeed.parseAirports(this, "airports.dat");
-		
-		// list for markers, hashmap for quicker access when matching with routes
-		airportList = new ArrayList<Marker>();
-		HashMap<Integer, Location> airports = new HashMap<Integer, Location>();
-		
-		// create markers from features
-		for(PointFeature feature : features) {
-			AirportMarker m = new AirportMarker(feature);
-			airportList.add(m);
-			
-			// put airport in hashmap with OpenFlights unique id for key
-			airports.put(Integer.parseInt(feature.getId()), feature.getLocation());
-		}
-		
-
+		// airports and routes are loaded in the background and picked up by draw(),
+		// so the map can be panned while they are read
+		loader = new FlightLoader(this, rankDestinationWeight, lodCellPixels, lodFullDetailZoom, lodBudgets);
+		loader.start();
 		
-		// parse route data and load route data to a list of shape features
-		List<ShapeFeature> routes = ParseFeed.parseRoutes(this, "routes.dat");
-		routeList = new ArrayList<Marker>();
-		for (ShapeFeature route : routes) {
-			
-			// get source and destination airportIds
-			int source = Integer.parseInt((String)route.getProperty("source"));
-			int dest = Integer.parseInt((String)route.getProperty("destination"));
-			
-			// get locations for airports on route
-			if (airports.containsKey(source) && airports.containsKey(dest)) {
-				route.addLocation(airports.get(source));
-				route.addLocation(airports.get(dest));
-			}
-			
-			// create markers from features
-			RouteMarker sl = new RouteMarker(route);
-			routeList.add(sl);
-		}
-		
-		
-		//UNCOMMENT IF YOU WANT TO SEE ALL ROUTES
-		map.addMarkers(routeList);
-
-		
-		// Make a sorted copy of the airport according to its latitude
-		airportList = airportList
-			.stream()
-			.map(marker -> ((AirportMarker) marker))
-			.sorted(Comparator.comparingDouble(AirportMarker::getLatitude))
-			.collect(Collectors.toList());
-		map.addMarkers(airportList);
+		// airports and routes are not map markers, they are drawn in batches by the layers
+		edges = mapEdges(map);
+		airportLayer = new AirportLayer(this, edges[0], edges[1], 
+				(int) (edges[2] - edges[0]), (int) (edges[3] - edges[1]));
+		routeLayer = new RouteLayer(this, edges[0], edges[1], 
+				(int) (edges[2] - edges[0]), (int) (edges[3] - edges[1]));
+		routeColor = color(60, 60, 160, 70);
+		routeHighlightColor = color(230, 120, 20, 220);
+		visibilityWorker = new VisibilityWorker(arcCacheBytes, topAirportsListed);
+		markerArcs = new ArcCache(markerArcCacheBytes);
 		
 		// Show message on how to use the map
 		String msg = "(Click the airport to see its detailed information.)";
@@ -124,20 +161,49 @@ public class AirportMap extends PApplet {
 	}
 	
 	public void draw() {
+		profiler.startFrame();
+		
+		profiler.start(PHASE_MAP);
 		map.draw();
+		profiler.stop(PHASE_MAP);
+		
+		takeLoadedData();
+		takeVisibility();
+		
+		// ask the worker for what is shown only when the view has changed,
+		// idle frames just redraw the last results
+		viewState.update(map, width, height);
+		if (airports != null && viewState.getVersion() != requestedVersion) {
+			profiler.start(PHASE_VIEW);
+			updateView();
+			profiler.stop(PHASE_VIEW);
+			requestedVersion = viewState.getVersion();
+		}
+		drawAirports();
+		
+		// the layer only redraws its buffer after it was given new route lines
+		profiler.start(PHASE_ROUTE_LAYER);
+		routeLayer.draw(g, routeColor, routeWeight);
+		drawRouteHighlights();
+		profiler.stop(PHASE_ROUTE_LAYER);
+		
+		// the timings are turned into text now and then, not every frame
+		if (frameCount % profileRefreshFrames == 0) {
+			profileInfo = getProfileInfo();
+		}
+		
+		profiler.start(PHASE_INFO_BOX);
 		drawInfoBox();
-		showRoutes();
-		for (Marker m: airportList) {
-			AirportMarker marker = (AirportMarker) m;
-			if (!marker.isHidden()) {
-				if (marker.isSelected()) {
-					showAirportTitle(marker, map);
-				}
-				if (marker.getClicked()) {
-					showAirportInfoBox(marker);
-				}
-			}
+		profiler.stop(PHASE_INFO_BOX);
+		
+		profiler.start(PHASE_TITLES);
+		if (selectedTitleRow >= 0) {
+			showAirportTitle();
+		}
+		if (clickedRoute != null && !clickedRoute.isHidden()) {
+			showRouteInfoBox();
 		}
+		profiler.stop(PHASE_TITLES);
 	}
 	
 	
@@ -152,44 +218,76 @@ public class AirportMap extends PApplet {
 	// and (x2, y2) is the bottom right one.
 	public float[] mapEdges(UnfoldingMap map) {
 		float[] mapEdges = new float[4];
-		mapEdges[0] = map.getScreenPosition(map.getTopLeftBorder()).x;
-		mapEdges[1] = map.getScreenPosition(map.getTopLeftBorder()).y;
+		ScreenPosition topLeft = map.getScreenPosition(map.getTopLeftBorder());
+		mapEdges[0] = topLeft.x;
+		mapEdges[1] = topLeft.y;
 		mapEdges[2] = mapEdges[0] + map.getWidth();
 		mapEdges[3] = mapEdges[1] + map.getHeight();
 		return mapEdges;
 	}
 	
-
-	// input a marker and a map
-	// returns true if the marker inside the map dimension
-	// otherwise returns false
-	private boolean isInsideMap(Marker m, UnfoldingMap map) {
-		float x = ((AbstractMarker) m).getScreenPosition(map).x;
-		float y = ((AbstractMarker) m).getScreenPosition(map).y;
-		if (x >= mapEdges(map)[0] && x <= mapEdges(map)[2]
-		&& y >= mapEdges(map)[1] && y <= mapEdges(map)[3]) {
-			return true;
-		}
-		return false;
+	// takes over the snapshots the loader has published since the last frame,
+	// airports first and routes once the airports are shown
+	private void takeLoadedData() {
+		if (airports == null) {
+			loadedAirports = loader.getAirports();
+			if (loadedAirports == null) {
+				return;
+			}
+			airports = loadedAirports.table;
+			airportMarkers = loadedAirports.markers;
+			airportShown = airportMarkers.shown;
+			viewState.touch();
+		}
+		if (routes == null) {
+			loadedRoutes = loader.getRoutes();
+			if (loadedRoutes == null) {
+				return;
+			}
+			routes = loadedRoutes.table;
+			routePairs = loadedRoutes.pairs;
+			routeMarkers = loadedRoutes.markers;
+			routeShown = routeMarkers.shown;
+			viewState.touch();
+		}
 	}
 	
-	// input a list of marker and a map
-	// returns to a sublist of airportList with coordinates are inside the map
-	private List <Marker> getMarkersInsideMap() {
-		return airportList
-				.stream()
-				.filter(m -> isInsideMap(m, map))
-				.collect(Collectors.toList());
+	// takes over the latest visibility finished by the worker, if there is a new one,
+	// and gives the one it replaces back to be filled again
+	private void takeVisibility() {
+		VisibilityWorker.Visibility fresh = visibilityWorker.take();
+		if (fresh == null) {
+			return;
+		}
+		profiler.record(PHASE_VISIBILITY, fresh.computeNanos);
+		
+		// the markers keep reading the same masks, only their bits are exchanged
+		airportShown.swap(fresh.airportShown);
+		if (fresh.routeShown != null && routeShown != null) {
+			routeShown.swap(fresh.routeShown);
+		}
+		airportLayer.setVisibility(fresh);
+		routeLayer.setLines(fresh.routeLines);
+		
+		if (visibility != null) {
+			visibilityWorker.recycle(visibility);
+		}
+		visibility = fresh;
+		layoutAirportTitle();
 	}
 	
-	// input a list of marker and a map
-	// returns to a sublist of markers inside the map
-	// (not hidden and inside the map)
-	private List <Marker> getDisplayedMarkers() {
-		return getMarkersInsideMap()
-				.stream()
-				.filter(m -> !m.isHidden())
-				.collect(Collectors.toList());
+	// hands the current view to the worker, which works out what it shows
+	// and projects the airports for it
+	private void updateView() {
+		MapProjection viewProjection = new MapProjection();
+		viewProjection.update(map);
+		
+		Location topLeft = map.getTopLeftBorder();
+		Location bottomRight = map.getBottomRightBorder();
+		visibilityWorker.request(new VisibilityWorker.View(viewState.getVersion(), map.getZoomLevel(), 
+				bottomRight.getLat(), topLeft.getLat(), topLeft.getLon(), bottomRight.getLon(), 
+				edges[0], edges[1], edges[2] - edges[0], edges[3] - edges[1], viewProjection, 
+				loadedAirports, loadedRoutes));
 	}
 	
 	private void drawInfoBox() {
@@ -199,22 +297,84 @@ public class AirportMap extends PApplet {
 		rect(spacing, spacing, infoBoxWidth, map.getHeight(), spacing/5);
 		popStyle();
 		
-		String displayZoomLevel = "Zoom Level: " + Integer.toString(map.getZoomLevel());
-		textAndCover(displayZoomLevel, spacing, spacing);
+		if (visibility != null) {
+			textAndCover(visibility.zoomInfo, spacing, spacing);
+			textAndCover(visibility.displayInfo, spacing, spacing + 20);
+			textAndCover(visibility.topAirportsInfo, spacing, spacing + 40);
+		}
+		
+		// progress of the loading below the last line it may cover
+		if (!loader.isDone()) {
+			drawLoadingProgress(spacing, spacing + 140);
+		}
 		
-		String hideInfo = String.format("%d out of %d airports displayed on the map", 
-				getDisplayedMarkers().size(), getMarkersInsideMap().size());
-		textAndCover(hideInfo, spacing, spacing + 20);
+		// frame timings at the bottom of the box
+		int y = spacing + (int) map.getHeight() - 20 * profileInfo.length - 10;
+		if (exportInfo != null) {
+			textAndCover(exportInfo, spacing, y - 20);
+		}
+		for (int i = 0; i < profileInfo.length; i++) {
+			textAndCover(profileInfo[i], spacing, y + 20 * i);
+		}
 
 		return;
 	}
 	
-	private void showAirportInfoBox(Marker m) {
-		textAndCover("Airport Code: " + m.getProperty("code"), spacing, spacing + 60);
-		textAndCover("Altitude: " + m.getProperty("altitude"), spacing, spacing + 80);
-		textAndCover(((AirportMarker) m).getTitle(), spacing, spacing + 100);
-
+	// draws the step the loader is at, with a bar of the steps done
+	private void drawLoadingProgress(int x, int y) {
+		Throwable failure = loader.getFailure();
+		if (failure != null) {
+			textAndCover("Loading failed: " + failure.getMessage(), x, y);
+			return;
+		}
+		int steps = FlightLoader.STEPS.length - 1;
+		textAndCover(String.format("Loading (%d/%d): %s", loader.getStep() + 1, steps, loader.getStatus()), x, y);
+		
+		pushStyle();
+		noStroke();
+		fill(220);
+		rect(x + 5, y + 24, infoBoxWidth - 10, 6);
+		fill(60, 60, 160);
+		rect(x + 5, y + 24, (infoBoxWidth - 10) * loader.getStep() / (float) steps, 6);
+		popStyle();
 	}
+	
+	// returns the frame rate and the rolling p50/p99 of every phase, one per line
+	private String[] getProfileInfo() {
+		String[] info = new String[profiler.phaseCount() + 1];
+		info[0] = String.format("%.1f fps, press e to export frame times", profiler.framesPerSecond());
+		for (int phase = 0; phase < profiler.phaseCount(); phase++) {
+			info[phase + 1] = String.format("%s: p50 %.2f ms, p99 %.2f ms", profiler.getName(phase), 
+					profiler.percentile(phase, 0.5) / 1e6, profiler.percentile(phase, 0.99) / 1e6);
+		}
+		return info;
+	}
+	
+	private void showRouteInfoBox() {
+		for (int i = 0; i < clickedRouteInfo.length; i++) {
+			textAndCover(clickedRouteInfo[i], spacing, spacing + 60 + 20 * i);
+		}
+	}
+	
+	// returns the lines of the info box of a clicked route,
+	// listing all airlines on the pair of airports, ten per line
+	private String[] getRouteInfo(RouteMarker m) {
+		String source = airports.getLabel(m.getSourceRow());
+		String dest = airports.getLabel(m.getDestRow());
+		String[] airlines = m.getAirlines();
+		int airlineLines = (airlines.length + 9) / 10;
+		
+		String[] info = new String[2 + airlineLines];
+		info[0] = "Route: " + source + (m.isBothWays() ? " and " : " to ") + dest 
+				+ (m.isBothWays() ? ", both ways" : ", one way");
+		info[1] = m.getMultiplicity() + " routes by " + airlines.length + " airlines:";
+		for (int i = 0; i < airlineLines; i++) {
+			int end = Math.min(airlines.length, 10 * i + 10);
+			info[2 + i] = String.join(", ", Arrays.copyOfRange(airlines, 10 * i, end));
+		}
+		return info;
+	}
+	
 	private void textAndCover(String string, int x, int y) {
 		pushStyle();
 		int fontSize = 14;
@@ -229,169 +389,181 @@ public class AirportMap extends PApplet {
 	}
 	
 	
-	// a helper method let airport markers only shown after a certain interval
-	private void limitAirportShown(List <Marker> airportList, int latInterval, int markerInterval)
-	{	
-		// reset all airport
-		hideAll();
-	
-		// Make a temp list to store airport markers within certain latitude range
-		List <Marker> temp = new ArrayList<>();
-		List <Integer> indexList = new ArrayList<>();
-		indexList.add(0);
-		
-		for (int lat = -90; lat < 90; lat = lat + latInterval) {
-			temp.clear();
-			for (int i = indexList.get(indexList.size()-1); i < airportList.size(); i ++ ) {
-				
-				if (((AirportMarker) airportList.get(i)).getLatitude() >= lat 
-						&& ((AirportMarker) airportList.get(i)).getLatitude() < lat + latInterval ) {
-					temp.add(airportList.get(i));
-				} else {
-					indexList.add(i);
-					break;
-				}
-
-			}
+	// places the title box of the hovered airport,
+	// selectedTitleRow is -1 if no displayed airport is hovered
+	private void layoutAirportTitle()
+	{
+		if (lastSelected == null || lastSelected.isHidden() || visibility == null) {
+			selectedTitleRow = -1;
+			return;
+		}
+		int row = lastSelected.getRow();
+		float x = airportX(row);
+		float y = airportY(row);
+		int start = airports.getTitleStart(row);
+		float titleWidth = textWidth(airports.getTitleChars(), start, airports.getTitleEnd(row) - start);
+		
+		float rightEdge = edges[2];
+		float bottomEdge = edges[3];
 
-		// loop over the indexList (the list of index of airport maker corresponding to the latitude interval)
-		for (int i = 0; i < indexList.size() - 1; i ++) {
-			int index = indexList.get(i);
-			int listSize = indexList.get(i + 1) - indexList.get(i);
-			
-			// Only show every markerInterval airport Marker
-			for (int j = 0; j < listSize; j = j + markerInterval) {
-				airportList.get(index + j).setHidden(false);
-				}
-				}
-			}	
+		// If the title box exceeds the right border of the map
+		if ((x + titleWidth + 6) > rightEdge) {
+			x = x - titleWidth - 6;
 		}
-	
-	
-	
-	// loop over and hide all route markers
-	private void hideAllRM() {
-		for(Marker marker : routeList) {
-			marker.setHidden(true);
+		
+		// if the title box exceeds the bottom border of the map
+		if ((y + 15 + 18) > bottomEdge) {
+			y = y - 18 - 15;
 		}
+		
+		selectedTitleRow = row;
+		selectedTitleWidth = titleWidth;
+		selectedX = x;
+		selectedY = y;
 	}
 	
-	// loop over and hide all airport markers
-	private void hideAll() {
-		for(Marker marker : getMarkersInsideMap()) {
-			marker.setHidden(true);
+	// draws the displayed airports, the markers are not added to the map so there is
+	// no marker object per airport; the layer redraws its buffer only after a change,
+	// the airports with a location or style of their own and the highlighted ones
+	// on top are drawn one by one
+	private void drawAirports()
+	{
+		if (airports == null || visibility == null) {
+			return;
+		}
+		airportLayer.draw(g, airportMarkers);
+		
+		for (int row : airportMarkers.overriddenRows()) {
+			if (airportShown.get(row) && !airportMarkers.isHighlighted(row)) {
+				drawAirport(row, false);
+			}
+		}
+		for (int i = 0; i < airportMarkers.highlightedCount(); i++) {
+			int row = airportMarkers.getHighlighted(i);
+			if (airportShown.get(row)) {
+				drawAirport(row, true);
+			}
 		}
 	}
-	
-	// loop over and unhide all airport markers
-	private void unhideAll() {
-		for(Marker marker : getMarkersInsideMap()) {
-			marker.setHidden(false);
+
+	// draws the marker of one airport if it is inside the map
+	private void drawAirport(int row, boolean highlighted)
+	{
+		float x = airportX(row);
+		float y = airportY(row);
+		if (x >= edges[0] && x < edges[2] && y >= edges[1] && y < edges[3]) {
+			new AirportMarker(airports, airportMarkers, row).draw(g, x, y, highlighted);
 		}
 	}
-	
-	/** Show the title of the earthquake if this marker is selected */
-	private void showAirportTitle(AirportMarker m, UnfoldingMap map)
-	{	
-		
-		float x = m.getScreenPosition(map).x;
-		float y = m.getScreenPosition(map).y;
-		String title = x +", " + y + m.getTitle();
-		
-		float rightEdge = mapEdges(map)[2];
-		float bottomEdge = mapEdges(map)[3];
 
-		// If the title box exceeds the right border of the map
-		if ((x + textWidth(title) + 6) > rightEdge) {
-			x = x - textWidth(title) - 6;
+	// screen position of an airport in the current view, the worker projects the
+	// table's locations, a marker moved since then is projected here
+	private float airportX(int row)
+	{
+		MarkerState.Override override = airportMarkers.getOverride(row);
+		if (override != null && !Float.isNaN(override.lon)) {
+			return visibility.view.projection.screenX(MapProjection.mercatorX(override.lon));
 		}
-		
-		// if the title box exceeds the bottom border of the map
-		if ((y + 15 + 18) > bottomEdge) {
-			y = y - 18 - 15;
+		return visibility.airportPositions.getX(row);
+	}
+
+	private float airportY(int row)
+	{
+		MarkerState.Override override = airportMarkers.getOverride(row);
+		if (override != null && !Float.isNaN(override.lat)) {
+			return visibility.view.projection.screenY(MapProjection.mercatorY(override.lat));
 		}
-		
+		return visibility.airportPositions.getY(row);
+	}
+	
+	/** Show the title of the airport if this marker is selected */
+	private void showAirportTitle()
+	{	
 		pushStyle();
 		
 		rectMode(PConstants.CORNER);
 		stroke(110);
 		fill(255,255,255);
-		rect(x, y + 15, textWidth(title) + 6, 18, 5);
+		rect(selectedX, selectedY + 15, selectedTitleWidth + 6, 18, 5);
 		textAlign(PConstants.LEFT, PConstants.TOP);
 		fill(0);
-		text(title, x + 3 , y +18);
+		text(airports.getTitleChars(), airports.getTitleStart(selectedTitleRow), 
+				airports.getTitleEnd(selectedTitleRow), selectedX + 3 , selectedY +18);
 
 		popStyle();
 		
 	}
 	
 
-	/** select the first airport marker is hovered by the mouse*/
-	private void selectMarkerIfHover(List<Marker> markers)
+	/** select the displayed airport marker nearest to the mouse */
+	private void selectMarkerIfHover()
 	{
 		// Abort if there's already a marker selected
 		if (lastSelected != null) {
 			return;
 		}
 		
-		for (Marker m : markers) {
-			CommonMarker marker = (CommonMarker) m;
-	
-			if (marker.isInside(map,  mouseX, mouseY)) {
-				lastSelected = marker;
-				marker.setSelected(true);
-				return;
-			}
+		if (visibility == null) {
+			return;
+		}
+		int row = visibility.hoverGrid.nearest(mouseX, mouseY, hoverRadius);
+		if (row >= 0) {
+			lastSelected = new AirportMarker(airports, airportMarkers, row);
+			lastSelected.setSelected(true);
 		}
 	}
 	
+	/** select the shown route nearest to the mouse click */
+	private void checkRouteForClick()
+	{
+		if (visibility == null) {
+			return;
+		}
+		int row = visibility.routeGrid.nearest(mouseX, mouseY, routeClickTolerance);
+		if (row >= 0) {
+			clickedRoute = new RouteMarker(airports, routes, routePairs, routeMarkers, row, markerArcs);
+			clickedRoute.setClicked(true);
+			clickedRouteInfo = getRouteInfo(clickedRoute);
+		}
+	}
 	
-	/** select the first route marker is clicked by the mouse*/
-	private void checkRouteForClick(List<Marker> markers)
+	// adds the lines the worker laid out for a shown route to the current shape
+	private void addRouteVertices(RouteLines lines, int route)
 	{
-		for (Marker m: markers) 
-		{
-			RouteMarker marker = (RouteMarker) m;
-			float w = marker.getStrokeWeight()*20; // increase the weight for test
-			List<ScreenPosition> posList  = marker.getLocations().stream().map(b -> map.getScreenPosition(b)).collect(Collectors.toList());
-
-			float x1 = min(posList.get(0).x, posList.get(1).x);
-			float y1 = min(posList.get(0).y, posList.get(1).y);
-			float x2 = max(posList.get(0).x, posList.get(1).x);
-			float y2 = max(posList.get(0).y, posList.get(1).y);
-
-			List<PVector> vectors = new ArrayList<>(); 
-			vectors.add(new PVector (x1 - w, y1 - w));
-			vectors.add(new PVector (x1 - w, y1 + w));
-			vectors.add(new PVector (x2 + w, y2 + w));
-			vectors.add(new PVector (x2 + w, y2 - w));
-			System.out.println(vectors);
-			
-			pushStyle();
-			stroke(255);
-			
-			if (marker.checkForClick(mouseX, mouseY, vectors)) { // need to change the isInside method to the vector version 
-				lastClicked = marker;
-				marker.setClicked(true);
-				System.out.println("Route Marker clicked");
-				System.out.println(marker.getProperties()); // test for clicking the route
-				return;
-			}
+		float[] l = lines.getLines(lines.getRouteClass(route));
+		for (int i = 4 * lines.getRouteFirstLine(route); i < 4 * lines.getRouteEndLine(route); i += 4) {
+			vertex(l[i], l[i + 1]);
+			vertex(l[i + 2], l[i + 3]);
 		}
 	}
 	
-	private void showRoutes() {
-		hideAllRM();
-		List<Integer>idList = getDisplayedMarkers()
-				.stream()
-				.map(m -> Integer.parseInt(m.getId()))
-				.collect(Collectors.toList());
-		
-		routeList
-		.stream()
-		.map(m -> ((RouteMarker) m))
-		.filter(m -> idList.contains(m.getSourceID()) && idList.contains(m.getDestID()))
-		.forEach(m -> m.setHidden(false));;
+	// draws the routes of the hovered airport and the clicked route over the route layer,
+	// from the lines of the current visibility in one shape
+	private void drawRouteHighlights()
+	{
+		if (visibility == null || routePairs == null) {
+			return;
+		}
+		RouteLines lines = visibility.routeLines;
+		pushStyle();
+		stroke(routeHighlightColor);
+		strokeWeight(2);
+		noFill();
+		beginShape(PConstants.LINES);
+		if (lastSelected != null && !lastSelected.isHidden()) {
+			int a = lastSelected.getRow();
+			for (int i = routePairs.firstIncident(a); i < routePairs.endIncident(a); i++) {
+				int p = routePairs.incidentPair(i);
+				if (routeShown.get(p)) {
+					addRouteVertices(lines, p);
+				}
+			}
+		}
+		if (clickedRoute != null && !clickedRoute.isHidden()) {
+			addRouteVertices(lines, clickedRoute.getRow());
+		}
+		endShape();
+		popStyle();
 	}
 	
 	/**___________End of Helper Methods ___________*/
@@ -401,39 +573,26 @@ public class AirportMap extends PApplet {
 	
 	/**___________Start of Event Methods ___________*/
 	
-	/** The event handler for mouse wheel
-	 * It will restrict the amount of airport markers displaying.
-	 * A max amount of 
-	 */
-	// Restrict  when the user zooms out to zoomlevel 5
-	@Override
-	public void mouseWheel() {
-
-		if (map.getZoomLevel() >= 5) {
-			unhideAll();
-		} else if (map.getZoomLevel() < 5 &&  map.getZoomLevel() >= 3) {
-			// max of 6 
-			limitAirportShown(getMarkersInsideMap(), 10, 6);
-		} else {
-			// Limit max amount of airport displayed
-			limitAirportShown(getMarkersInsideMap(), 10, 30);
-		}
-	}
-	
-	
 	/** Event handler that gets called automatically when the 
 	 * mouse moves.
 	 */
 	@Override
 	public void mouseMoved()
 	{
+		AirportMarker previous = lastSelected;
+		
 		// clear the last selection
 		if (lastSelected != null) {
 			lastSelected.setSelected(false);
 			lastSelected = null;
 		
 		}
-		selectMarkerIfHover(airportList);
+		selectMarkerIfHover();
+		
+		// the title box only changes with the hovered airport
+		if (!Objects.equals(lastSelected, previous)) {
+			layoutAirportTitle();
+		}
 		//loop();
 	}
 	
@@ -445,12 +604,29 @@ public class AirportMap extends PApplet {
 	@Override
 	public void mouseClicked()
 	{	
-		// reset lastClicked to make sure only one is set Clicked per time
-		if (lastClicked != null) {
-			lastClicked.setClicked(false);
-			lastClicked = null;
+		// reset the clicked route to make sure only one is set Clicked per time
+		if (clickedRoute != null) {
+			clickedRoute.setClicked(false);
+			clickedRoute = null;
+		}
+		checkRouteForClick();
+	}
+	
+	/** Writes the frame time histograms to frame-times.csv when e is pressed,
+	 * the info box tells where they went or why they could not be written */
+	@Override
+	public void keyPressed()
+	{
+		if (key != 'e') {
+			return;
+		}
+		String fileName = sketchPath("frame-times.csv");
+		try (Writer out = new FileWriter(fileName)) {
+			profiler.writeHistograms(out);
+			exportInfo = "Frame times written to " + fileName;
+		} catch (IOException e) {
+			exportInfo = "Could not write " + fileName + ": " + e.getMessage();
 		}
-		checkRouteForClick(showRoutes());
 	}
 
 	/**___________End of Event Methods ___________*/
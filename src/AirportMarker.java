@@ -1,59 +1,123 @@
 package module6;
 
-import java.util.List;
-
-import de.fhpotsdam.unfolding.data.Feature;
-import de.fhpotsdam.unfolding.data.PointFeature;
-import de.fhpotsdam.unfolding.marker.SimpleLinesMarker;
+import de.fhpotsdam.unfolding.UnfoldingMap;
+import de.fhpotsdam.unfolding.utils.ScreenPosition;
+import parsing.AirportTable;
+import processing.core.PApplet;
 import processing.core.PGraphics;
 
-/** 
+/**
  * A class to represent AirportMarkers on a world map.
- *   
+ * The marker is a flyweight over its row in the shared AirportTable,
+ * properties are read from the table's columns.
+ *
  * @author Adam Setters and the UC San Diego Intermediate Software Development
  * MOOC team
  *
  */
-public class AirportMarker extends CommonMarker
+public class AirportMarker extends FlyweightMarker
 {
-	public static List<SimpleLinesMarker> routes;
-	
-	public AirportMarker(Feature airport) {
-		super(((PointFeature)airport).getLocation(), airport.getProperties());
-		this.setId(airport.getId());
-	
+	// diameter of the marker and distance within which a point is inside it, in pixels
+	public static final float SIZE = 5;
+
+	private static final String[] PROPERTY_KEYS = {"name", "city", "country", "code", "altitude"};
+
+	private final AirportTable table;
+
+	public AirportMarker(AirportTable table, MarkerState state, int row) {
+		super(state, row);
+		this.table = table;
+	}
+
+	// the OpenFlights unique id, kept in the table instead of a String field
+	@Override
+	protected String getTableId() {
+		return Integer.toString(table.getId(row));
+	}
+
+	@Override
+	protected float getTableLat() {
+		return table.getLat(row);
+	}
+
+	@Override
+	protected float getTableLon() {
+		return table.getLon(row);
+	}
+
+	// properties are columns of the table rather than entries of a HashMap
+	@Override
+	protected Object getTableProperty(String key) {
+		switch (key) {
+		case "name":
+			return table.getName(row);
+		case "city":
+			return table.getCity(row);
+		case "country":
+			return table.getCountry(row);
+		case "code":
+			return table.getCode(row);
+		case "altitude":
+			return table.getAltitude(row);
+		default:
+			return null;
+		}
+	}
+
+	@Override
+	protected String[] getTablePropertyKeys() {
+		return PROPERTY_KEYS;
 	}
-	
 
 	// a getter method to get latitude
 	public float getLatitude() {
-		return this.getLocation().getLat();
+		return getLat();
 	}
-	
-	// a getter method to get the title
+
+	// a getter method to get the title, drawing code should use the table's title slice instead
 	public String getTitle() {
-		String title = String.join(", ", (String) this.getProperty("name"), (String) this.getProperty("city"), (String) this.getProperty("country"));
-		return title;
+		return table.getTitle(row);
+	}
+
+	public ScreenPosition getScreenPosition(UnfoldingMap map) {
+		return map.getScreenPosition(getLocation());
 	}
-	
-	
+
 	@Override
-	public void drawMarker(PGraphics pg, float x, float y) {
-//		pg.fill(11);
-		pg.ellipse(x, y, 5, 5);
-		
-		
+	public boolean isInside(UnfoldingMap map, float checkX, float checkY) {
+		ScreenPosition pos = getScreenPosition(map);
+		return PApplet.dist(pos.x, pos.y, checkX, checkY) <= SIZE;
 	}
 
+	// draws the marker where the map shows it, the way Unfolding's markers do
 	@Override
-	public void showTitle(PGraphics pg, float x, float y) {
-		
-		// save previous styling
+	public void draw(UnfoldingMap map) {
+		if (isHidden()) {
+			return;
+		}
+		PGraphics pg = map.mapDisplay.getOuterPG();
+		float[] xy = map.mapDisplay.getObjectFromLocation(getLocation());
+		draw(pg, xy[0], xy[1]);
+	}
+
+	// draws the marker at a position on the screen, with its style
+	public void draw(PGraphics pg, float x, float y) {
+		draw(pg, x, y, isHighlighted());
+	}
+
+	// the same, highlighted or not whatever its flags
+	public void draw(PGraphics pg, float x, float y, boolean highlighted) {
 		pg.pushStyle();
-		 // show rectangle with title
-		pg.fill(255);
+		state.applyStyle(pg, row, highlighted);
+		drawMarker(pg, x, y);
+		pg.popStyle();
+	}
+
+	public void drawMarker(PGraphics pg, float x, float y) {
+//		pg.fill(11);
+		pg.ellipse(x, y, SIZE, SIZE);
+
 
-		// show routes
 	}
-	
+
 }
@@ -0,0 +1,76 @@
+package module6;
+
+import java.util.Arrays;
+
+/**
+ * Ranks airports by importance, computed once from the route network.
+ *
+ * The score of an airport is the number of routes that start or end there,
+ * plus destinationWeight times the number of distinct airports it has
+ * routes to. Airports are sorted by score, highest first, with ties broken
+ * by row so the ranking is the same on every run.
+ */
+public class AirportRank {
+
+	private final float[] score;
+	private final int[] order;
+	private final int[] rankOf;
+
+	/*
+	 * @param graph - routes keyed by airport row
+	 * @param destinationWeight - weight of a distinct destination relative to a route
+	 */
+	public AirportRank(RouteGraph graph, float destinationWeight) {
+		int n = graph.airportCount();
+		int[] routes = new int[n];
+		int[] destinations = new int[n];
+
+		// last airport that counted a destination, to count each one once
+		int[] seenBy = new int[n];
+		Arrays.fill(seenBy, -1);
+
+		for (int a = 0; a < n; a++) {
+			routes[a] += graph.outDegree(a);
+			for (int e = graph.firstEdge(a); e < graph.endEdge(a); e++) {
+				int target = graph.target(e);
+				routes[target]++;
+				if (seenBy[target] != a) {
+					seenBy[target] = a;
+					destinations[a]++;
+				}
+			}
+		}
+
+		score = new float[n];
+		long[] keys = new long[n];
+		for (int a = 0; a < n; a++) {
+			score[a] = routes[a] + destinationWeight * destinations[a];
+			// the bits of a non-negative float sort like the float,
+			// so the key orders by score descending and then by row
+			long scoreBits = Integer.MAX_VALUE - Float.floatToIntBits(Math.max(0, score[a]));
+			keys[a] = (scoreBits << 32) | a;
+		}
+		Arrays.sort(keys);
+
+		order = new int[n];
+		rankOf = new int[n];
+		for (int r = 0; r < n; r++) {
+			order[r] = (int) keys[r];
+			rankOf[order[r]] = r;
+		}
+	}
+
+	public float getScore(int airportRow) {
+		return score[airportRow];
+	}
+
+	// rank of the airport, 0 is the most important one
+	public int getRank(int airportRow) {
+		return rankOf[airportRow];
+	}
+
+	// all airport rows, most important first
+	public int[] getOrder() {
+		return order;
+	}
+}
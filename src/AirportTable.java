@@ -0,0 +1,294 @@
+package parsing;
+
+import java.util.Arrays;
+
+/**
+ * Columnar store for the airports of airports.dat.
+ *
+ * Every airport is a row; each attribute lives in its own primitive array
+ * so the table costs a handful of arrays instead of one object graph per
+ * airport. OpenFlights ids are small and dense, so the id->row lookup is a
+ * plain int array rather than a HashMap of boxed Integers.
+ *
+ * Cities and countries repeat a lot, so both columns are codes into one
+ * shared StringDictionary. The title of every airport, "name, city,
+ * country", is laid out once into a single char array when the airport is
+ * added; getTitleStart()/getTitleEnd() give its slice, which can be
+ * measured and drawn without building a String. The name is the start of
+ * the title and is not kept separately. Codes are a TextColumn, one byte
+ * slice per airport.
+ */
+public class AirportTable {
+
+	private static final int NO_ROW = -1;
+	private static final int NO_CODE = -1;
+
+	private int size;
+	private int[] id;
+	private float[] lat;
+	private float[] lon;
+	private short[] altitude;
+	private int[] city;
+	private int[] country;
+	private TextColumn code;
+
+	// city and country are codes into places
+	private StringDictionary places = new StringDictionary();
+
+	// the title of row r is titles[titleStart[r], titleStart[r+1]), its name the first nameLength[r] chars
+	private char[] titles;
+	private int[] titleStart;
+	private short[] nameLength;
+
+	// rowById[openFlightsId] is the row of that airport, or NO_ROW
+	private int[] rowById = new int[0];
+
+	public AirportTable() {
+		this(1024);
+	}
+
+	public AirportTable(int capacity) {
+		capacity = Math.max(capacity, 16);
+		id = new int[capacity];
+		lat = new float[capacity];
+		lon = new float[capacity];
+		altitude = new short[capacity];
+		city = new int[capacity];
+		country = new int[capacity];
+		code = new TextColumn(capacity);
+		titles = new char[capacity * 32];
+		titleStart = new int[capacity + 1];
+		nameLength = new short[capacity];
+	}
+
+	/*
+	 * Wraps columns that were read in bulk, e.g. from a snapshot.
+	 * City and country are codes into places, names are only used for the titles
+	 * and are decoded into them straight from their bytes.
+	 * A negative or duplicate id is rejected.
+	 */
+	AirportTable(int size, int[] id, float[] lat, float[] lon, short[] altitude,
+			TextColumn name, int[] city, int[] country, StringDictionary places, TextColumn code) {
+		this.size = size;
+		this.id = id;
+		this.lat = lat;
+		this.lon = lon;
+		this.altitude = altitude;
+		this.city = city;
+		this.country = country;
+		this.places = places;
+		this.code = code;
+
+		titles = new char[Math.max(16, size) * 32];
+		titleStart = new int[size + 1];
+		nameLength = new short[size];
+		for (int row = 0; row < size; row++) {
+			addTitle(row, name);
+		}
+
+		// the ids are checked like addAirport() checks them
+		int maxId = -1;
+		for (int row = 0; row < size; row++) {
+			if (id[row] < 0) {
+				throw new IllegalArgumentException("Negative airport id " + id[row]);
+			}
+			maxId = Math.max(maxId, id[row]);
+		}
+		rowById = new int[maxId + 1];
+		Arrays.fill(rowById, NO_ROW);
+		for (int row = 0; row < size; row++) {
+			if (rowById[id[row]] != NO_ROW) {
+				throw new IllegalArgumentException("Duplicate airport id " + id[row]);
+			}
+			rowById[id[row]] = row;
+		}
+	}
+
+	/*
+	 * Appends an airport and returns its row.
+	 * An id that is already in the table is rejected.
+	 */
+	public int addAirport(int airportId, float latitude, float longitude, int alt,
+			String airportName, String airportCity, String airportCountry, String airportCode) {
+		if (airportId < 0) {
+			throw new IllegalArgumentException("Negative airport id " + airportId);
+		}
+		if (rowOf(airportId) != NO_ROW) {
+			throw new IllegalArgumentException("Duplicate airport id " + airportId);
+		}
+		if (size == id.length) {
+			grow();
+		}
+		int row = size++;
+		id[row] = airportId;
+		lat[row] = latitude;
+		lon[row] = longitude;
+		// altitudes are in feet, the highest airports are around 14,500
+		altitude[row] = (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, alt));
+		city[row] = airportCity == null ? NO_CODE : places.add(airportCity);
+		country[row] = airportCountry == null ? NO_CODE : places.add(airportCountry);
+		code.add(airportCode);
+		addTitle(row, airportName);
+
+		if (airportId >= rowById.length) {
+			int oldLength = rowById.length;
+			rowById = Arrays.copyOf(rowById, Math.max(airportId + 1, oldLength * 2));
+			Arrays.fill(rowById, oldLength, rowById.length, NO_ROW);
+		}
+		rowById[airportId] = row;
+		return row;
+	}
+
+	private void grow() {
+		int capacity = id.length * 2;
+		id = Arrays.copyOf(id, capacity);
+		lat = Arrays.copyOf(lat, capacity);
+		lon = Arrays.copyOf(lon, capacity);
+		altitude = Arrays.copyOf(altitude, capacity);
+		city = Arrays.copyOf(city, capacity);
+		country = Arrays.copyOf(country, capacity);
+		titleStart = Arrays.copyOf(titleStart, capacity + 1);
+		nameLength = Arrays.copyOf(nameLength, capacity);
+	}
+
+	// lays out "name, city, country" of the row after the title of the row before it,
+	// leaving out the parts that are missing
+	private void addTitle(int row, String airportName) {
+		String name = airportName == null ? "" : airportName;
+		addPlaces(row, appendTitle(titleStart[row], name, false));
+	}
+
+	// the same with the name taken from row of the column, without a String
+	private void addTitle(int row, TextColumn names) {
+		int end = titleStart[row];
+		int length = Math.max(0, names.getLength(row));
+		if (end + length > titles.length) {
+			titles = Arrays.copyOf(titles, Math.max(titles.length * 2, end + length));
+		}
+		addPlaces(row, end + names.getChars(row, titles, end));
+	}
+
+	// appends city and country to the name that ends at end
+	private void addPlaces(int row, int end) {
+		nameLength[row] = (short) Math.min(Short.MAX_VALUE, end - titleStart[row]);
+		if (city[row] != NO_CODE) {
+			end = appendPlace(end, city[row], end > titleStart[row]);
+		}
+		if (country[row] != NO_CODE) {
+			end = appendPlace(end, country[row], end > titleStart[row]);
+		}
+		titleStart[row + 1] = end;
+	}
+
+	private int appendTitle(int end, String part, boolean separator) {
+		int length = part.length() + (separator ? 2 : 0);
+		if (end + length > titles.length) {
+			titles = Arrays.copyOf(titles, Math.max(titles.length * 2, end + length));
+		}
+		if (separator) {
+			titles[end++] = ',';
+			titles[end++] = ' ';
+		}
+		part.getChars(0, part.length(), titles, end);
+		return end + part.length();
+	}
+
+	// the same for a place, copied from the dictionary without a String
+	private int appendPlace(int end, int place, boolean separator) {
+		int length = places.getLength(place) + (separator ? 2 : 0);
+		if (end + length > titles.length) {
+			titles = Arrays.copyOf(titles, Math.max(titles.length * 2, end + length));
+		}
+		if (separator) {
+			titles[end++] = ',';
+			titles[end++] = ' ';
+		}
+		return end + places.getChars(place, titles, end);
+	}
+
+	// returns the row of the airport with the OpenFlights id, or -1 if unknown
+	public int rowOf(int airportId) {
+		if (airportId < 0 || airportId >= rowById.length) {
+			return NO_ROW;
+		}
+		return rowById[airportId];
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public int getId(int row) {
+		return id[row];
+	}
+
+	public float getLat(int row) {
+		return lat[row];
+	}
+
+	public float getLon(int row) {
+		return lon[row];
+	}
+
+	public int getAltitude(int row) {
+		return altitude[row];
+	}
+
+	// the name is a slice of the title, so this builds a String, see getTitleStart()
+	public String getName(int row) {
+		return new String(titles, titleStart[row], nameLength[row]);
+	}
+
+	public String getCity(int row) {
+		return city[row] == NO_CODE ? null : places.get(city[row]);
+	}
+
+	public String getCountry(int row) {
+		return country[row] == NO_CODE ? null : places.get(country[row]);
+	}
+
+	// code of the city in getPlaces(), or -1 if it is missing
+	public int getCityCode(int row) {
+		return city[row];
+	}
+
+	// code of the country in getPlaces(), or -1 if it is missing
+	public int getCountryCode(int row) {
+		return country[row];
+	}
+
+	// the dictionary shared by the city and country columns
+	public StringDictionary getPlaces() {
+		return places;
+	}
+
+	// the chars all titles are laid out in, shared and not to be changed
+	public char[] getTitleChars() {
+		return titles;
+	}
+
+	// index of the first char of the row's title in getTitleChars()
+	public int getTitleStart(int row) {
+		return titleStart[row];
+	}
+
+	// index one past the last char of the row's title
+	public int getTitleEnd(int row) {
+		return titleStart[row + 1];
+	}
+
+	// "name, city, country" as a String, built on every call
+	public String getTitle(int row) {
+		return new String(titles, titleStart[row], titleStart[row + 1] - titleStart[row]);
+	}
+
+	// returns the IATA/FAA code, the ICAO code if there is none, or null
+	public String getCode(int row) {
+		return code.getString(row);
+	}
+
+	// returns the code of the airport, or its name if it has none
+	public String getLabel(int row) {
+		return code.isNull(row) ? getName(row) : code.getString(row);
+	}
+}
@@ -0,0 +1,221 @@
+package module6;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Great-circle arcs of routes, simplified for a zoom level and cached.
+ *
+ * An arc is first densified along the great circle, about a vertex per
+ * degree, then simplified with Douglas-Peucker to half a pixel at the
+ * zoom level it is asked for, so a short hop keeps two vertices while a
+ * long-haul route keeps the few dozen its curve needs. Vertices are Web
+ * Mercator coordinates (see MapProjection) in a float array, x then y;
+ * drawing an arc on a new view only needs the affine screen transform.
+ *
+ * Arcs across the antimeridian are unwrapped: their x continues past 0 or
+ * 1 rather than jumping, so the last vertex tells on which side the arc
+ * leaves the world.
+ *
+ * Floats keep the Mercator coordinates to well under a pixel up to about
+ * zoom level 14.
+ *
+ * Entries are kept in least recently used order and the oldest are
+ * dropped once the arrays take more than the memory cap.
+ */
+public class ArcCache {
+
+	// world width in pixels at zoom level 0
+	private static final int TILE_SIZE = 256;
+
+	// the simplified arcs may be off by this many pixels
+	private static final float TOLERANCE_PIXELS = 0.5f;
+
+	private static final int MAX_VERTICES = 361;
+
+	// bytes counted per entry next to its array, for the map entry and key
+	private static final int ENTRY_OVERHEAD = 64;
+
+	private final long maxBytes;
+	private long bytes;
+	private final LinkedHashMap<Long, float[]> arcs = new LinkedHashMap<Long, float[]>(1024, 0.75f, true);
+
+	// scratch space for densifying and simplifying
+	private final float[] denseX = new float[MAX_VERTICES];
+	private final float[] denseY = new float[MAX_VERTICES];
+	private final boolean[] keep = new boolean[MAX_VERTICES];
+	private final int[] stack = new int[2 * MAX_VERTICES];
+
+	/*
+	 * @param maxBytes - memory the cached arrays may take
+	 */
+	public ArcCache(long maxBytes) {
+		this.maxBytes = maxBytes;
+	}
+
+	/*
+	 * Returns the arc of the route at the zoom level as x0, y0, x1, y1, ...
+	 * in Mercator coordinates, computing it if it is not cached.
+	 * The array is shared and must not be changed.
+	 *
+	 * @param route - id of the route, arcs are cached by route and zoom level
+	 * @param zoomLevel - zoom level the arc is simplified for
+	 */
+	public float[] get(int route, int zoomLevel, float lat1, float lon1, float lat2, float lon2) {
+		Long key = ((long) route << 6) | Math.max(0, Math.min(63, zoomLevel));
+		float[] arc = arcs.get(key);
+		if (arc == null) {
+			arc = compute(zoomLevel, lat1, lon1, lat2, lon2);
+			arcs.put(key, arc);
+			bytes += size(arc);
+			evict();
+		}
+		return arc;
+	}
+
+	public int size() {
+		return arcs.size();
+	}
+
+	public long bytes() {
+		return bytes;
+	}
+
+	public void clear() {
+		arcs.clear();
+		bytes = 0;
+	}
+
+	private static long size(float[] arc) {
+		return 16 + 4L * arc.length + ENTRY_OVERHEAD;
+	}
+
+	// drops the least recently used arcs while the cache is over its cap
+	private void evict() {
+		Iterator<Map.Entry<Long, float[]>> oldest = arcs.entrySet().iterator();
+		while (bytes > maxBytes && oldest.hasNext()) {
+			bytes -= size(oldest.next().getValue());
+			oldest.remove();
+		}
+	}
+
+	private float[] compute(int zoomLevel, float lat1, float lon1, float lat2, float lon2) {
+		int n = densify(lat1, lon1, lat2, lon2);
+		float tolerance = TOLERANCE_PIXELS / (TILE_SIZE * (float) Math.pow(2, zoomLevel));
+		int kept = simplify(n, tolerance);
+
+		float[] arc = new float[2 * kept];
+		for (int i = 0, k = 0; i < n; i++) {
+			if (keep[i]) {
+				arc[k++] = denseX[i];
+				arc[k++] = denseY[i];
+			}
+		}
+		return arc;
+	}
+
+	/*
+	 * Fills denseX/denseY with points along the great circle, interpolated
+	 * on the unit sphere, and returns how many.
+	 */
+	private int densify(float lat1, float lon1, float lat2, float lon2) {
+		double phi1 = Math.toRadians(lat1);
+		double phi2 = Math.toRadians(lat2);
+		double lambda1 = Math.toRadians(lon1);
+		double lambda2 = Math.toRadians(lon2);
+		double ax = Math.cos(phi1) * Math.cos(lambda1);
+		double ay = Math.cos(phi1) * Math.sin(lambda1);
+		double az = Math.sin(phi1);
+		double bx = Math.cos(phi2) * Math.cos(lambda2);
+		double by = Math.cos(phi2) * Math.sin(lambda2);
+		double bz = Math.sin(phi2);
+		double angle = Math.acos(Math.max(-1, Math.min(1, ax * bx + ay * by + az * bz)));
+		double sinAngle = Math.sin(angle);
+
+		// a vertex about every degree, two for points too close or too far apart to interpolate
+		int n = sinAngle < 1e-6 ? 2 : Math.max(2, Math.min(MAX_VERTICES, (int) Math.ceil(Math.toDegrees(angle)) + 1));
+		for (int i = 0; i < n; i++) {
+			float lat;
+			float lon;
+			if (i == 0 || i == n - 1) {
+				lat = i == 0 ? lat1 : lat2;
+				lon = i == 0 ? lon1 : lon2;
+			} else {
+				double t = (double) i / (n - 1);
+				double wa = Math.sin((1 - t) * angle) / sinAngle;
+				double wb = Math.sin(t * angle) / sinAngle;
+				double x = wa * ax + wb * bx;
+				double y = wa * ay + wb * by;
+				double z = wa * az + wb * bz;
+				lat = (float) Math.toDegrees(Math.atan2(z, Math.sqrt(x * x + y * y)));
+				lon = (float) Math.toDegrees(Math.atan2(y, x));
+			}
+			denseX[i] = MapProjection.mercatorX(lon);
+			denseY[i] = MapProjection.mercatorY(lat);
+			// unwrap across the antimeridian so the arc stays continuous
+			if (i > 0) {
+				while (denseX[i] - denseX[i - 1] > 0.5f) {
+					denseX[i] -= 1;
+				}
+				while (denseX[i] - denseX[i - 1] < -0.5f) {
+					denseX[i] += 1;
+				}
+			}
+		}
+		return n;
+	}
+
+	/*
+	 * Marks in keep the points of the Douglas-Peucker simplification of the
+	 * first n dense points, and returns how many are kept.
+	 */
+	private int simplify(int n, float tolerance) {
+		for (int i = 0; i < n; i++) {
+			keep[i] = false;
+		}
+		keep[0] = true;
+		keep[n - 1] = true;
+		int kept = 2;
+
+		// ranges still to split, as pairs of first and last point
+		int top = 0;
+		stack[top++] = 0;
+		stack[top++] = n - 1;
+		float tolerance2 = tolerance * tolerance;
+		while (top > 0) {
+			int last = stack[--top];
+			int first = stack[--top];
+			int farthest = -1;
+			float farthestDistance = tolerance2;
+			for (int i = first + 1; i < last; i++) {
+				float d = distanceSquared(i, first, last);
+				if (d > farthestDistance) {
+					farthest = i;
+					farthestDistance = d;
+				}
+			}
+			if (farthest >= 0) {
+				keep[farthest] = true;
+				kept++;
+				stack[top++] = first;
+				stack[top++] = farthest;
+				stack[top++] = farthest;
+				stack[top++] = last;
+			}
+		}
+		return kept;
+	}
+
+	// squared distance from dense point i to the segment between dense points a and b
+	private float distanceSquared(int i, int a, int b) {
+		float dx = denseX[b] - denseX[a];
+		float dy = denseY[b] - denseY[a];
+		float length = dx * dx + dy * dy;
+		float t = length > 0 ? ((denseX[i] - denseX[a]) * dx + (denseY[i] - denseY[a]) * dy) / length : 0;
+		t = Math.max(0, Math.min(1, t));
+		float ex = denseX[a] + t * dx - denseX[i];
+		float ey = denseY[a] + t * dy - denseY[i];
+		return ex * ex + ey * ey;
+	}
+}
@@ -0,0 +1,157 @@
+package module6;
+
+import java.util.Arrays;
+
+/**
+ * A fixed-size set of bits packed into long words, indexed by airport or route row.
+ *
+ * Works like java.util.BitSet, but never grows, exposes range and word
+ * operations that the visibility code needs, and can gather bits through
+ * an index array (see andGather) without going through single-bit calls.
+ */
+public class BitMask {
+
+	private long[] words;
+	private final int size;
+
+	public BitMask(int size) {
+		this.size = size;
+		this.words = new long[(size + 63) >>> 6];
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean get(int i) {
+		return (words[i >>> 6] & (1L << i)) != 0;
+	}
+
+	public void set(int i) {
+		words[i >>> 6] |= 1L << i;
+	}
+
+	public void clear(int i) {
+		words[i >>> 6] &= ~(1L << i);
+	}
+
+	public void set(int i, boolean value) {
+		if (value) {
+			set(i);
+		} else {
+			clear(i);
+		}
+	}
+
+	// sets the bits from (inclusive) to (exclusive), a word at a time
+	public void setRange(int from, int to) {
+		if (from >= to) {
+			return;
+		}
+		int first = from >>> 6;
+		int last = (to - 1) >>> 6;
+		long firstMask = -1L << from;
+		long lastMask = -1L >>> -to;
+		if (first == last) {
+			words[first] |= firstMask & lastMask;
+			return;
+		}
+		words[first] |= firstMask;
+		for (int w = first + 1; w < last; w++) {
+			words[w] = -1L;
+		}
+		words[last] |= lastMask;
+	}
+
+	public void clearAll() {
+		Arrays.fill(words, 0);
+	}
+
+	public void setAll() {
+		Arrays.fill(words, -1L);
+		if ((size & 63) != 0) {
+			words[words.length - 1] = -1L >>> -size;
+		}
+	}
+
+	public void copyFrom(BitMask other) {
+		System.arraycopy(other.words, 0, words, 0, words.length);
+	}
+
+	/*
+	 * Exchanges the bits of the two masks by swapping their words, so a
+	 * mask filled elsewhere is taken over in constant time, whatever its size.
+	 * Both masks must have the same size.
+	 */
+	public void swap(BitMask other) {
+		if (other.size != size) {
+			throw new IllegalArgumentException("Masks of size " + size + " and " + other.size);
+		}
+		long[] w = words;
+		words = other.words;
+		other.words = w;
+	}
+
+	// keeps only the bits that are also set in other
+	public void and(BitMask other) {
+		for (int w = 0; w < words.length; w++) {
+			words[w] &= other.words[w];
+		}
+	}
+
+	public void or(BitMask other) {
+		for (int w = 0; w < words.length; w++) {
+			words[w] |= other.words[w];
+		}
+	}
+
+	/*
+	 * ANDs this mask with the mask whose bit i is source.get(index[i]).
+	 * The gathered mask is only built for words that still have bits set,
+	 * so a sparse mask costs little even when the index array is long.
+	 */
+	public void andGather(BitMask source, int[] index) {
+		for (int w = 0; w < words.length; w++) {
+			long word = words[w];
+			if (word == 0) {
+				continue;
+			}
+			long gathered = 0;
+			int base = w << 6;
+			while (word != 0) {
+				int bit = Long.numberOfTrailingZeros(word);
+				word &= word - 1;
+				if (source.get(index[base + bit])) {
+					gathered |= 1L << bit;
+				}
+			}
+			words[w] &= gathered;
+		}
+	}
+
+	// returns the index of the first set bit at or after from, or -1
+	public int nextSetBit(int from) {
+		if (from >= size) {
+			return -1;
+		}
+		int w = from >>> 6;
+		long word = words[w] & (-1L << from);
+		while (true) {
+			if (word != 0) {
+				return (w << 6) + Long.numberOfTrailingZeros(word);
+			}
+			if (++w == words.length) {
+				return -1;
+			}
+			word = words[w];
+		}
+	}
+
+	public int cardinality() {
+		int count = 0;
+		for (long word : words) {
+			count += Long.bitCount(word);
+		}
+		return count;
+	}
+}
@@ -0,0 +1,254 @@
+package parsing;
+
+import java.util.Arrays;
+
+/**
+ * Typed primitive columns loaded with a TableSchema.
+ *
+ * Every column is one array: int[] for INT, float[] for FLOAT and int[]
+ * codes into a StringDictionary for STRING. Every int can be a value, so
+ * INT and FLOAT columns keep their nulls in a bitmap next to the array,
+ * one bit per row; a null reads as 0 or NaN. STRING columns store
+ * NULL_CODE, which is never a code, and TEXT columns are TextColumns,
+ * which mark their own nulls. isNull() checks all of them.
+ * A number that cannot be parsed loads as a null instead of failing the
+ * whole file. A series is a row-major float
+ * matrix with NaN for missing entries, getSeries(row, i) is entry i of
+ * the row and getSeriesLabel(i) the label of entry i, e.g. its year.
+ */
+public class ColumnTable {
+
+	public static final int NULL_CODE = -1;
+
+	private final TableSchema schema;
+	private int size;
+
+	// data of column c, ints for INT and STRING columns, floats for FLOAT columns
+	private final int[][] ints;
+	private final float[][] floats;
+	private final StringDictionary[] dictionaries;
+	private final TextColumn[] texts;
+
+	// bit r of nulls[c] is set if row r of the INT or FLOAT column c is null
+	private final long[][] nulls;
+
+	// series entry i of row r is series[r * seriesWidth + i]
+	private float[] series;
+	private int seriesWidth = -1;
+	private int[] seriesLabels;
+
+	ColumnTable(TableSchema schema) {
+		this.schema = schema;
+		int columns = schema.columnCount();
+		ints = new int[columns][];
+		floats = new float[columns][];
+		dictionaries = new StringDictionary[columns];
+		texts = new TextColumn[columns];
+		nulls = new long[columns][];
+		for (int c = 0; c < columns; c++) {
+			if (schema.getType(c) == TableSchema.Type.FLOAT) {
+				floats[c] = new float[1024];
+			} else if (schema.getType(c) == TableSchema.Type.TEXT) {
+				texts[c] = new TextColumn();
+			} else {
+				ints[c] = new int[1024];
+			}
+			if (schema.getType(c) == TableSchema.Type.STRING) {
+				dictionaries[c] = new StringDictionary();
+			}
+			if (schema.getType(c) == TableSchema.Type.INT || schema.getType(c) == TableSchema.Type.FLOAT) {
+				nulls[c] = new long[1024 >> 6];
+			}
+		}
+	}
+
+	// sets the width and labels of the series from the header
+	void setSeriesLabels(int[] labels) {
+		if (labels != null) {
+			seriesLabels = labels;
+			seriesWidth = labels.length;
+		}
+	}
+
+	// decodes the declared fields of the tokenizer's current row into a new row
+	void addRow(CsvTokenizer csv) {
+		int row = size++;
+		for (int c = 0; c < ints.length; c++) {
+			int field = schema.getField(c);
+			boolean missing = csv.isMissing(field);
+			switch (schema.getType(c)) {
+			case INT:
+				ints[c] = grow(ints[c], row);
+				nulls[c] = growBits(nulls[c], row);
+				if (missing) {
+					setNull(c, row);
+				} else {
+					try {
+						ints[c][row] = csv.getInt(field);
+					} catch (NumberFormatException e) {
+						setNull(c, row);
+					}
+				}
+				break;
+			case FLOAT:
+				floats[c] = grow(floats[c], row);
+				nulls[c] = growBits(nulls[c], row);
+				float value = missing ? Float.NaN : parseFloat(csv, field);
+				floats[c][row] = value;
+				if (Float.isNaN(value)) {
+					setNull(c, row);
+				}
+				break;
+			case STRING:
+				ints[c] = grow(ints[c], row);
+				ints[c][row] = missing ? NULL_CODE : csv.getCode(field, dictionaries[c]);
+				break;
+			case TEXT:
+				if (missing) {
+					texts[c].addNull();
+				} else {
+					csv.addText(field, texts[c]);
+				}
+				break;
+			}
+		}
+
+		int first = schema.getSeriesField();
+		if (first < 0) {
+			return;
+		}
+		if (seriesWidth < 0) {
+			// without a header the first row decides the width
+			seriesWidth = Math.max(0, csv.fieldCount() - first);
+			seriesLabels = new int[seriesWidth];
+			for (int i = 0; i < seriesWidth; i++) {
+				seriesLabels[i] = i;
+			}
+		}
+		if (series == null) {
+			series = new float[1024 * seriesWidth];
+		}
+		if (series.length < (row + 1) * seriesWidth) {
+			series = Arrays.copyOf(series, Math.max(series.length * 2, (row + 1) * seriesWidth));
+		}
+		int base = row * seriesWidth;
+		for (int i = 0; i < seriesWidth; i++) {
+			int field = first + i;
+			series[base + i] = csv.isMissing(field) ? Float.NaN : parseFloat(csv, field);
+		}
+	}
+
+	// the field as a float, NaN if it is not a number
+	private static float parseFloat(CsvTokenizer csv, int field) {
+		try {
+			return csv.getFloat(field);
+		} catch (NumberFormatException e) {
+			return Float.NaN;
+		}
+	}
+
+	private void setNull(int column, int row) {
+		nulls[column][row >> 6] |= 1L << row;
+	}
+
+	private static long[] growBits(long[] bits, int row) {
+		return (row >> 6) < bits.length ? bits : Arrays.copyOf(bits, bits.length * 2);
+	}
+
+	private static int[] grow(int[] values, int row) {
+		return row < values.length ? values : Arrays.copyOf(values, values.length * 2);
+	}
+
+	private static float[] grow(float[] values, int row) {
+		return row < values.length ? values : Arrays.copyOf(values, values.length * 2);
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public TableSchema getSchema() {
+		return schema;
+	}
+
+	// index of the column with the name, or -1
+	public int column(String name) {
+		for (int c = 0; c < schema.columnCount(); c++) {
+			if (schema.getName(c).equals(name)) {
+				return c;
+			}
+		}
+		return -1;
+	}
+
+	public boolean isNull(int column, int row) {
+		switch (schema.getType(column)) {
+		case INT:
+		case FLOAT:
+			return (nulls[column][row >> 6] & 1L << row) != 0;
+		case TEXT:
+			return texts[column].isNull(row);
+		default:
+			return ints[column][row] == NULL_CODE;
+		}
+	}
+
+	// value of an INT column, 0 for null
+	public int getInt(int column, int row) {
+		return ints[column][row];
+	}
+
+	// value of a FLOAT column, NaN for null
+	public float getFloat(int column, int row) {
+		return floats[column][row];
+	}
+
+	// dictionary code of a STRING column, NULL_CODE for null
+	public int getCode(int column, int row) {
+		return ints[column][row];
+	}
+
+	// value of a STRING or TEXT column, or null
+	public String getString(int column, int row) {
+		if (texts[column] != null) {
+			return texts[column].getString(row);
+		}
+		int code = ints[column][row];
+		return code == NULL_CODE ? null : dictionaries[column].get(code);
+	}
+
+	// the distinct values of a STRING column, by code
+	public StringDictionary getDictionary(int column) {
+		return dictionaries[column];
+	}
+
+	// the values of a TEXT column, by row
+	public TextColumn getText(int column) {
+		return texts[column];
+	}
+
+	// number of entries of the series per row, 0 without a series
+	public int seriesWidth() {
+		return Math.max(0, seriesWidth);
+	}
+
+	// label of series entry i, e.g. its year
+	public int getSeriesLabel(int i) {
+		return seriesLabels[i];
+	}
+
+	// entry i of the row's series, NaN if it is missing
+	public float getSeries(int row, int i) {
+		return series[row * seriesWidth + i];
+	}
+
+	// index of the last entry of the row's series that is not missing, or -1
+	public int lastInSeries(int row) {
+		for (int i = seriesWidth() - 1; i >= 0; i--) {
+			if (!Float.isNaN(series[row * seriesWidth + i])) {
+				return i;
+			}
+		}
+		return -1;
+	}
+}
@@ -0,0 +1,392 @@
+package parsing;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+import processing.core.PApplet;
+
+/**
+ * A single-pass, quote-aware CSV tokenizer that streams rows from a channel.
+ *
+ * Each call to nextRow() reads one line into a reusable byte buffer, strips
+ * the quotes around fields (a doubled quote inside a quoted field is kept
+ * as one quote) and records where every field starts and ends. Numeric
+ * fields are decoded straight from the bytes, so no String is created
+ * unless getString() is called.
+ *
+ * OpenFlights writes missing values as \N, which isNull() reports;
+ * isMissing() also counts empty fields and the World Bank's "..".
+ */
+public class CsvTokenizer {
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	// magnitude of Integer.MIN_VALUE, the largest an int field can reach before its sign
+	private static final long INT_LIMIT = 1L << 31;
+
+	// powers of ten that are exact in a double
+	private static final double[] POW10 = new double[23];
+	static {
+		POW10[0] = 1;
+		for (int i = 1; i < POW10.length; i++) {
+			POW10[i] = POW10[i - 1] * 10;
+		}
+	}
+
+	private final ReadableByteChannel channel;
+	private final ByteBuffer buffer;
+	private final ByteBuffer source;
+	private final byte[] input;
+	private int position;
+	private int limit;
+
+	// bytes of the current row with the quotes already removed
+	private byte[] row = new byte[256];
+	private int rowLength;
+
+	// field i covers row[fieldStart[i], fieldEnd[i])
+	private int[] fieldStart = new int[16];
+	private int[] fieldEnd = new int[16];
+	private boolean[] fieldQuoted = new boolean[16];
+	private int fieldCount;
+
+	public CsvTokenizer(ReadableByteChannel channel) {
+		this.channel = channel;
+		this.source = null;
+		this.input = new byte[BUFFER_SIZE];
+		this.buffer = ByteBuffer.wrap(input);
+	}
+
+	/*
+	 * Tokenize bytes that are already in memory, e.g. a slice of a mapped file.
+	 * The bytes between the buffer's position and limit are read; a heap
+	 * buffer is read in place, a direct one is copied a block at a time.
+	 */
+	public CsvTokenizer(ByteBuffer bytes) {
+		this.channel = null;
+		this.buffer = null;
+		if (bytes.hasArray()) {
+			this.source = null;
+			this.input = bytes.array();
+			this.position = bytes.arrayOffset() + bytes.position();
+			this.limit = bytes.arrayOffset() + bytes.limit();
+		} else {
+			this.source = bytes.duplicate();
+			this.input = new byte[BUFFER_SIZE];
+		}
+	}
+
+	/*
+	 * Opens a file (or URL) the same way PApplet.loadStrings() would look it up.
+	 *
+	 * @param p - PApplet being used
+	 * @param fileName - file name or URL for data source
+	 */
+	public static CsvTokenizer open(PApplet p, String fileName) {
+		InputStream in = p.createInput(fileName);
+		if (in == null) {
+			throw new IllegalArgumentException("Could not open " + fileName);
+		}
+		return new CsvTokenizer(Channels.newChannel(in));
+	}
+
+	/*
+	 * Advances to the next non-empty row.
+	 *
+	 * @return false once the input is exhausted
+	 */
+	public boolean nextRow() {
+		do {
+			if (!readRow()) {
+				return false;
+			}
+		} while (rowLength == 0 && fieldCount == 1 && !fieldQuoted[0]);
+		return true;
+	}
+
+	private boolean readRow() {
+		fieldCount = 0;
+		rowLength = 0;
+		if (position == limit && !fill()) {
+			return false;
+		}
+
+		boolean inQuotes = false;
+		boolean quoted = false;
+		boolean closedQuote = false;
+		int start = 0;
+
+		while (true) {
+			if (position == limit && !fill()) {
+				// last row without a trailing newline
+				addField(start, quoted);
+				return true;
+			}
+			byte b = input[position++];
+
+			if (inQuotes) {
+				if (b == '"') {
+					inQuotes = false;
+					closedQuote = true;
+				} else {
+					append(b);
+				}
+				continue;
+			}
+
+			if (b == '"') {
+				// "" inside a quoted field stands for one quote
+				if (closedQuote) {
+					append(b);
+				}
+				inQuotes = true;
+				quoted = true;
+			} else if (b == ',') {
+				addField(start, quoted);
+				start = rowLength;
+				quoted = false;
+			} else if (b == '\n') {
+				addField(start, quoted);
+				return true;
+			} else if (b != '\r') {
+				append(b);
+			}
+			closedQuote = false;
+		}
+	}
+
+	private boolean fill() {
+		if (source != null) {
+			int n = Math.min(input.length, source.remaining());
+			if (n == 0) {
+				return false;
+			}
+			source.get(input, 0, n);
+			position = 0;
+			limit = n;
+			return true;
+		}
+		if (channel == null) {
+			return false;
+		}
+		try {
+			int n;
+			do {
+				buffer.clear();
+				n = channel.read(buffer);
+			} while (n == 0);
+			if (n < 0) {
+				channel.close();
+				return false;
+			}
+			position = 0;
+			limit = n;
+			return true;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private void append(byte b) {
+		if (rowLength == row.length) {
+			byte[] grown = new byte[row.length * 2];
+			System.arraycopy(row, 0, grown, 0, rowLength);
+			row = grown;
+		}
+		row[rowLength++] = b;
+	}
+
+	private void addField(int start, boolean quoted) {
+		if (fieldCount == fieldStart.length) {
+			int size = fieldCount * 2;
+			int[] starts = new int[size];
+			int[] ends = new int[size];
+			boolean[] quotes = new boolean[size];
+			System.arraycopy(fieldStart, 0, starts, 0, fieldCount);
+			System.arraycopy(fieldEnd, 0, ends, 0, fieldCount);
+			System.arraycopy(fieldQuoted, 0, quotes, 0, fieldCount);
+			fieldStart = starts;
+			fieldEnd = ends;
+			fieldQuoted = quotes;
+		}
+		fieldStart[fieldCount] = start;
+		fieldEnd[fieldCount] = rowLength;
+		fieldQuoted[fieldCount] = quoted;
+		fieldCount++;
+	}
+
+	// Getter method for the number of fields in the current row
+	public int fieldCount() {
+		return fieldCount;
+	}
+
+	// returns true if the field is the unquoted OpenFlights null marker \N
+	public boolean isNull(int field) {
+		return field >= fieldCount
+				|| (!fieldQuoted[field]
+				&& fieldEnd[field] - fieldStart[field] == 2
+				&& row[fieldStart[field]] == '\\'
+				&& row[fieldStart[field] + 1] == 'N');
+	}
+
+	// returns true if the field is missing or has no characters
+	public boolean isEmpty(int field) {
+		return field >= fieldCount || fieldEnd[field] == fieldStart[field];
+	}
+
+	/*
+	 * Returns true if the field has no value: it is missing, empty, the
+	 * OpenFlights marker \N or the World Bank marker .. (quoted or not).
+	 */
+	public boolean isMissing(int field) {
+		return isEmpty(field) || isNull(field)
+				|| (fieldEnd[field] - fieldStart[field] == 2
+				&& row[fieldStart[field]] == '.'
+				&& row[fieldStart[field] + 1] == '.');
+	}
+
+	public String getString(int field) {
+		checkField(field);
+		int start = fieldStart[field];
+		return new String(row, start, fieldEnd[field] - start, StandardCharsets.UTF_8);
+	}
+
+	// returns the dictionary code of the field, without creating a String for known values
+	public int getCode(int field, StringDictionary dictionary) {
+		checkField(field);
+		int start = fieldStart[field];
+		return dictionary.add(row, start, fieldEnd[field] - start);
+	}
+
+	// appends the field's bytes to a text column, without creating a String
+	public void addText(int field, TextColumn column) {
+		checkField(field);
+		int start = fieldStart[field];
+		column.add(row, start, fieldEnd[field] - start);
+	}
+
+	public int getInt(int field) {
+		checkField(field);
+		int i = fieldStart[field];
+		int end = fieldEnd[field];
+		boolean negative = false;
+		if (i < end && (row[i] == '-' || row[i] == '+')) {
+			negative = row[i] == '-';
+			i++;
+		}
+		if (i == end) {
+			throw new NumberFormatException("Not an int: \"" + getString(field) + "\"");
+		}
+		// accumulated in a long, so a value past the int range is seen instead of wrapping
+		long value = 0;
+		for (; i < end; i++) {
+			int digit = row[i] - '0';
+			if (digit < 0 || digit > 9 || value > INT_LIMIT) {
+				// leave odd cases (spaces, overflow) to the JDK
+				return Integer.parseInt(getString(field).trim());
+			}
+			value = value * 10 + digit;
+		}
+		if (value > (negative ? INT_LIMIT : Integer.MAX_VALUE)) {
+			return Integer.parseInt(getString(field).trim());
+		}
+		return (int) (negative ? -value : value);
+	}
+
+	public float getFloat(int field) {
+		return (float) getDouble(field);
+	}
+
+	/*
+	 * Decodes plain decimal numbers (optionally with an exponent) straight
+	 * from the row bytes. Anything else is handed to Double.parseDouble.
+	 */
+	public double getDouble(int field) {
+		checkField(field);
+		int i = fieldStart[field];
+		int end = fieldEnd[field];
+		boolean negative = false;
+		if (i < end && (row[i] == '-' || row[i] == '+')) {
+			negative = row[i] == '-';
+			i++;
+		}
+
+		long mantissa = 0;
+		int digits = 0;
+		int scale = 0;
+		boolean seenPoint = false;
+		boolean seenDigit = false;
+		for (; i < end; i++) {
+			byte b = row[i];
+			if (b >= '0' && b <= '9') {
+				seenDigit = true;
+				if (digits < 18) {
+					mantissa = mantissa * 10 + (b - '0');
+					if (mantissa != 0) {
+						digits++;
+					}
+					if (seenPoint) {
+						scale++;
+					}
+				} else if (!seenPoint) {
+					// too many digits for a long, drop the ones that don't matter
+					scale--;
+				}
+			} else if (b == '.' && !seenPoint) {
+				seenPoint = true;
+			} else {
+				break;
+			}
+		}
+
+		if (i < end && (row[i] == 'e' || row[i] == 'E') && seenDigit) {
+			i++;
+			boolean negativeExp = false;
+			if (i < end && (row[i] == '-' || row[i] == '+')) {
+				negativeExp = row[i] == '-';
+				i++;
+			}
+			int exp = 0;
+			int expStart = i;
+			for (; i < end && row[i] >= '0' && row[i] <= '9'; i++) {
+				exp = Math.min(exp * 10 + (row[i] - '0'), 1000);
+			}
+			if (i == expStart) {
+				return fallbackDouble(field);
+			}
+			scale += negativeExp ? exp : -exp;
+		}
+
+		if (!seenDigit || i != end) {
+			return fallbackDouble(field);
+		}
+
+		double value;
+		if (scale == 0) {
+			value = mantissa;
+		} else if (scale > 0 && scale < POW10.length) {
+			value = mantissa / POW10[scale];
+		} else if (scale < 0 && -scale < POW10.length) {
+			value = mantissa * POW10[-scale];
+		} else {
+			return fallbackDouble(field);
+		}
+		return negative ? -value : value;
+	}
+
+	// the accessors read the field's bounds, which are stale past the fields of the current row
+	private void checkField(int field) {
+		if (field < 0 || field >= fieldCount) {
+			throw new IndexOutOfBoundsException("Field: " + field + ", Fields: " + fieldCount);
+		}
+	}
+
+	private double fallbackDouble(int field) {
+		return Double.parseDouble(getString(field).trim());
+	}
+}
@@ -0,0 +1,286 @@
+package parsing;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import de.fhpotsdam.unfolding.data.PointFeature;
+import de.fhpotsdam.unfolding.geo.Location;
+import processing.core.PApplet;
+
+/**
+ * Streams the entries of a GeoRSS earthquake feed into point features.
+ *
+ * The feed is read with a StAX pull parser, one entry at a time: an entry
+ * becomes a feature as soon as its end tag is read and is handed to the
+ * caller, so only the entry being read is held in memory and feeds much
+ * larger than the heap can be read from a file or a URL.
+ *
+ * In incremental mode the reader remembers the newest <updated> time it
+ * has returned. Later reads skip the entries that are not newer (or were
+ * already returned at that same time), without building their features,
+ * so refreshing a feed only pays for the new quakes.
+ */
+public class EarthquakeReader {
+
+	private static final String GEORSS = "http://www.georss.org/georss";
+
+	private final XMLInputFactory factory;
+	private boolean incremental;
+
+	// newest update time returned so far, and the ids of the entries returned at it
+	private long lastUpdated = Long.MIN_VALUE;
+	private final Set<String> lastIds = new HashSet<String>();
+
+	// the entry being read
+	private String id;
+	private long updated;
+	private String title;
+	private String point;
+	private String elevation;
+	private String age;
+
+	public EarthquakeReader() {
+		factory = XMLInputFactory.newInstance();
+		factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+		factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+	}
+
+	// in incremental mode, entries not newer than the ones read before are skipped
+	public void setIncremental(boolean incremental) {
+		this.incremental = incremental;
+	}
+
+	// newest <updated> time of the returned entries in ms since the epoch, for incremental reads
+	public long getLastUpdated() {
+		return lastUpdated;
+	}
+
+	/*
+	 * Reads a feed into a list.
+	 *
+	 * @param p - PApplet being used
+	 * @param fileName - file name or URL for data source
+	 */
+	public List<PointFeature> read(PApplet p, String fileName) {
+		List<PointFeature> features = new ArrayList<PointFeature>();
+		InputStream in = p.createInput(fileName);
+		if (in == null) {
+			throw new IllegalArgumentException("Could not open " + fileName);
+		}
+		try {
+			read(in, features::add);
+		} finally {
+			try {
+				in.close();
+			} catch (IOException e) {
+				// nothing was lost, the feed has been read
+			}
+		}
+		return features;
+	}
+
+	/*
+	 * Reads a feed and hands every entry with a location to the sink as soon
+	 * as it is complete. The stream is not closed.
+	 *
+	 * @param in - the feed
+	 * @param sink - receives the features in feed order
+	 * @return the number of features handed to the sink
+	 */
+	public int read(InputStream in, Consumer<PointFeature> sink) {
+		// the watermark only moves once the whole feed has been seen
+		long newestUpdated = lastUpdated;
+		Set<String> newestIds = new HashSet<String>(lastIds);
+		int count = 0;
+		XMLStreamReader xml = null;
+		try {
+			xml = factory.createXMLStreamReader(in);
+			while (xml.hasNext()) {
+				if (xml.next() != XMLStreamConstants.START_ELEMENT || !"entry".equals(xml.getLocalName())) {
+					continue;
+				}
+				readEntry(xml);
+				if (incremental && isOld()) {
+					continue;
+				}
+				PointFeature feature = toFeature();
+				if (feature == null) {
+					continue;
+				}
+				sink.accept(feature);
+				count++;
+
+				if (updated > newestUpdated) {
+					newestUpdated = updated;
+					newestIds.clear();
+				}
+				if (updated == newestUpdated && id != null) {
+					newestIds.add(id);
+				}
+			}
+		} catch (XMLStreamException e) {
+			throw new IllegalArgumentException("Could not read the feed: " + e.getMessage(), e);
+		} finally {
+			if (xml != null) {
+				try {
+					xml.close();
+				} catch (XMLStreamException e) {
+					// the reader holds nothing else
+				}
+			}
+		}
+		lastUpdated = newestUpdated;
+		lastIds.clear();
+		lastIds.addAll(newestIds);
+		return count;
+	}
+
+	// true if the entry was returned by an earlier read or is older than it,
+	// entries without an update time are only returned by the first read
+	private boolean isOld() {
+		return updated < lastUpdated || (updated == lastUpdated && lastIds.contains(id));
+	}
+
+	// reads the fields of an entry up to its end tag, the reader is on its start tag
+	private void readEntry(XMLStreamReader xml) throws XMLStreamException {
+		id = null;
+		updated = Long.MIN_VALUE;
+		title = null;
+		point = null;
+		elevation = null;
+		age = null;
+
+		int depth = 1;
+		while (depth > 0) {
+			int event = xml.next();
+			if (event == XMLStreamConstants.END_ELEMENT) {
+				depth--;
+				continue;
+			}
+			if (event != XMLStreamConstants.START_ELEMENT) {
+				continue;
+			}
+			String name = xml.getLocalName();
+			boolean georss = GEORSS.equals(xml.getNamespaceURI()) || "georss".equals(xml.getPrefix());
+			if ("category".equals(name)) {
+				if ("Age".equals(xml.getAttributeValue(null, "label"))) {
+					age = xml.getAttributeValue(null, "term");
+				}
+				depth++;
+			} else if ("id".equals(name)) {
+				id = xml.getElementText();
+			} else if ("updated".equals(name)) {
+				updated = parseTime(xml.getElementText());
+			} else if ("title".equals(name)) {
+				title = xml.getElementText();
+			} else if (georss && "point".equals(name)) {
+				point = xml.getElementText();
+			} else if (georss && "elev".equals(name)) {
+				elevation = xml.getElementText();
+			} else {
+				depth++;
+			}
+		}
+	}
+
+	// returns the feature of the entry just read, or null if it has no location
+	private PointFeature toFeature() {
+		Location location = parsePoint(point);
+		if (location == null) {
+			return null;
+		}
+		PointFeature feature = new PointFeature(location);
+
+		// Sets title if existing
+		if (title != null) {
+			feature.putProperty("title", title);
+			float magnitude = parseMagnitude(title);
+			if (!Float.isNaN(magnitude)) {
+				feature.putProperty("magnitude", magnitude);
+			}
+		}
+
+		// depth in km with one decimal place, from the elevation in meters; every entry
+		// has a depth, like before, which stays 0 if the elevation is missing or not a number
+		float depth = 0;
+		if (elevation != null) {
+			try {
+				depth = (int) (Float.parseFloat(elevation.trim()) / 100) / 10f;
+			} catch (NumberFormatException e) {
+				// only this entry's depth is lost, not the feed
+			}
+		}
+		feature.putProperty("depth", Math.abs(depth));
+
+		if (age != null) {
+			feature.putProperty("age", age);
+		}
+		return feature;
+	}
+
+	// parses "lat lon", or returns null
+	private static Location parsePoint(String text) {
+		if (text == null) {
+			return null;
+		}
+		text = text.trim();
+		int space = text.indexOf(' ');
+		if (space < 0) {
+			return null;
+		}
+		try {
+			float lat = Float.parseFloat(text.substring(0, space));
+			float lon = Float.parseFloat(text.substring(space + 1).trim());
+			return new Location(lat, lon);
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+	/*
+	 * Parses the magnitude from a title like "M 4.6 - 10km SW of Town",
+	 * the number after the leading "M " up to the next space or comma,
+	 * or returns NaN if the title does not start with one.
+	 */
+	static float parseMagnitude(String title) {
+		title = title.trim();
+		if (!title.startsWith("M ")) {
+			return Float.NaN;
+		}
+		int start = 2;
+		while (start < title.length() && title.charAt(start) == ' ') {
+			start++;
+		}
+		int end = start;
+		while (end < title.length() && title.charAt(end) != ' ' && title.charAt(end) != ',') {
+			end++;
+		}
+		try {
+			return Float.parseFloat(title.substring(start, end));
+		} catch (NumberFormatException e) {
+			return Float.NaN;
+		}
+	}
+
+	// ms since the epoch of an ISO-8601 time, or Long.MIN_VALUE if it is not one
+	private static long parseTime(String text) {
+		try {
+			return Instant.parse(text.trim()).toEpochMilli();
+		} catch (DateTimeParseException e) {
+			return Long.MIN_VALUE;
+		}
+	}
+}
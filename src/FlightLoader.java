@@ -0,0 +1,240 @@
+package module6;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+
+import parsing.AirportTable;
+import parsing.ParseFeed;
+import parsing.RouteTable;
+import parsing.SnapshotCache;
+import processing.core.PApplet;
+
+/**
+ * Loads the airports and routes of AirportMap on a background thread.
+ *
+ * The work of the old setup() runs on a single-thread executor and is
+ * handed over in two snapshots: the airports as soon as they are read
+ * (before routes.dat is parsed when there is no binary snapshot),
+ * with a level of detail in table order, and the routes once they
+ * are joined, grouped into pairs and used to rank the airports. Each
+ * snapshot is published through an AtomicReference after it is complete
+ * and the loader never touches it again, so the drawing thread can pick
+ * it up with getAirports()/getRoutes() without locking and own its
+ * marker state from then on. There are no marker objects per airport or
+ * route, markers are flyweights over the tables and the MarkerState.
+ *
+ * getStep() and getStatus() tell how far the loading is, for a progress
+ * indicator; getFailure() is set if it stopped with an error.
+ */
+public class FlightLoader {
+
+	// steps of the loading, getStep() is the one running
+	public static final String[] STEPS = {
+		"reading airports", "indexing airports", "reading routes", "joining routes to airports",
+		"grouping routes into pairs", "ranking airports", "done"
+	};
+
+	/** Airport data handed to the drawing thread, complete when published */
+	public static class AirportSnapshot {
+		public final AirportTable table;
+
+		// flags and style of the airport markers, shown is the level of detail
+		public final MarkerState markers;
+
+		// Mercator coordinates by row, projected to the screen by ScreenPositions
+		public final float[] mercatorX;
+		public final float[] mercatorY;
+		public final AirportGrid grid;
+		public final LodPyramid lodPyramid;
+
+		AirportSnapshot(AirportTable table, MarkerState markers, float[] mercatorX, float[] mercatorY,
+				AirportGrid grid, LodPyramid lodPyramid) {
+			this.table = table;
+			this.markers = markers;
+			this.mercatorX = mercatorX;
+			this.mercatorY = mercatorY;
+			this.grid = grid;
+			this.lodPyramid = lodPyramid;
+		}
+	}
+
+	/** Route data handed to the drawing thread, with the airports ranked by it */
+	public static class RouteSnapshot {
+		public final RouteTable table;
+		public final RouteGraph graph;
+		public final RoutePairs pairs;
+
+		// flags and style of the route markers, one row per pair
+		public final MarkerState markers;
+
+		// airport index and level of detail ordered by rank, replacing the ones of the airports
+		public final AirportRank rank;
+		public final AirportGrid grid;
+		public final LodPyramid lodPyramid;
+
+		RouteSnapshot(RouteTable table, RouteGraph graph, RoutePairs pairs, MarkerState markers,
+				AirportRank rank, AirportGrid grid, LodPyramid lodPyramid) {
+			this.table = table;
+			this.graph = graph;
+			this.pairs = pairs;
+			this.markers = markers;
+			this.rank = rank;
+			this.grid = grid;
+			this.lodPyramid = lodPyramid;
+		}
+	}
+
+	private final PApplet p;
+	private final float rankDestinationWeight;
+	private final int lodCellPixels;
+	private final int lodFullDetailZoom;
+	private final int[] lodBudgets;
+
+	private final AtomicReference<AirportSnapshot> airports = new AtomicReference<AirportSnapshot>();
+	private final AtomicReference<RouteSnapshot> routes = new AtomicReference<RouteSnapshot>();
+	private volatile int step;
+	private volatile Throwable failure;
+
+	/*
+	 * @param p - PApplet whose data folder holds airports.dat and routes.dat
+	 * @param rankDestinationWeight, lodCellPixels, lodFullDetailZoom, lodBudgets -
+	 *   settings of AirportRank and LodPyramid
+	 */
+	public FlightLoader(PApplet p, float rankDestinationWeight,
+			int lodCellPixels, int lodFullDetailZoom, int[] lodBudgets) {
+		this.p = p;
+		this.rankDestinationWeight = rankDestinationWeight;
+		this.lodCellPixels = lodCellPixels;
+		this.lodFullDetailZoom = lodFullDetailZoom;
+		this.lodBudgets = lodBudgets.clone();
+	}
+
+	// starts loading on a daemon thread and returns right away
+	public void start() {
+		ExecutorService executor = Executors.newSingleThreadExecutor(task -> {
+			Thread thread = new Thread(task, "flight-loader");
+			thread.setDaemon(true);
+			return thread;
+		});
+		executor.execute(() -> {
+			try {
+				load();
+			} catch (Throwable e) {
+				failure = e;
+				System.err.println("Could not load flight data: " + e);
+			}
+		});
+		executor.shutdown();
+	}
+
+	// the airports, or null while they are loading
+	public AirportSnapshot getAirports() {
+		return airports.get();
+	}
+
+	// the routes, or null while they are loading
+	public RouteSnapshot getRoutes() {
+		return routes.get();
+	}
+
+	// index into STEPS of the step running, STEPS.length - 1 when done
+	public int getStep() {
+		return step;
+	}
+
+	public String getStatus() {
+		return STEPS[step];
+	}
+
+	public boolean isDone() {
+		return step == STEPS.length - 1;
+	}
+
+	// the error loading stopped with, or null
+	public Throwable getFailure() {
+		return failure;
+	}
+
+	private void load() {
+		// read airports and routes from the binary snapshot, the text files are
+		// only parsed when there is no snapshot or they changed since it was written
+		AirportTable airportTable;
+		RouteTable routeTable = null;
+		SnapshotCache snapshot = new SnapshotCache(p.dataFile("flights.snapshot"),
+				p.dataFile("airports.dat"), p.dataFile("routes.dat"));
+		if (snapshot.read()) {
+			airportTable = snapshot.getAirports();
+			routeTable = snapshot.getRoutes();
+		} else {
+			// get airport data as a columnar table, the routes follow once the airports are shown
+			airportTable = ParseFeed.parseAirportTable(p, "airports.dat");
+		}
+
+		step = 1;
+		// every airport starts visible, markers are flyweights over their row in the table
+		MarkerState airportMarkers = new MarkerState(airportTable.size());
+		airportMarkers.shown.setAll();
+
+		// until the routes rank them, airports are thinned out in table order
+		int[] tableOrder = LodPyramid.tableOrder(airportTable);
+		airports.set(new AirportSnapshot(airportTable, airportMarkers,
+				MapProjection.mercatorX(airportTable), MapProjection.mercatorY(airportTable),
+				new AirportGrid(airportTable, 1, tableOrder),
+				new LodPyramid(airportTable, tableOrder, lodCellPixels, lodFullDetailZoom, lodBudgets)));
+
+		step = 2;
+		if (routeTable == null) {
+			routeTable = ParseFeed.parseRouteTable(p, "routes.dat");
+			snapshot.write(airportTable, routeTable);
+		}
+
+		step = 3;
+		// join routes to airports by OpenFlights id
+		int[] tableRows = new int[routeTable.size()];
+		int[] sourceRows = new int[routeTable.size()];
+		int[] destRows = new int[routeTable.size()];
+		int resolved = 0;
+		for (int r = 0; r < routeTable.size(); r++) {
+
+			// get source and destination rows from the OpenFlights ids
+			int source = airportTable.rowOf(routeTable.getSourceId(r));
+			int dest = airportTable.rowOf(routeTable.getDestId(r));
+
+			// skip routes to airports that are not in airports.dat
+			if (source < 0 || dest < 0) {
+				continue;
+			}
+
+			tableRows[resolved] = r;
+			sourceRows[resolved] = source;
+			destRows[resolved] = dest;
+			resolved++;
+		}
+
+		// resolve routes once into an adjacency structure keyed by airport row
+		RouteGraph routeGraph = new RouteGraph(airportTable.size(), sourceRows, destRows, resolved);
+
+		step = 4;
+		// collapse the routes into one edge per pair of airports,
+		// every airline and direction between two airports is drawn as one line
+		RoutePairs routePairs = new RoutePairs(airportTable.size(), routeTable,
+				tableRows, sourceRows, destRows, resolved);
+
+		// route markers are flyweights over the pairs, in the order of the pair graph's
+		// edges, so the pairs starting at an airport are a range of route rows;
+		// every pair starts hidden until both of its airports are displayed;
+		// the routes are drawn by the route layer, in the map's route style
+		MarkerState routeMarkers = new MarkerState(routePairs.pairCount());
+
+		step = 5;
+		// rank airports once by their routes so hubs are preferred over airstrips,
+		// and index them again in that order
+		AirportRank airportRank = new AirportRank(routeGraph, rankDestinationWeight);
+		routes.set(new RouteSnapshot(routeTable, routeGraph, routePairs, routeMarkers, airportRank,
+				new AirportGrid(airportTable, 1, airportRank.getOrder()),
+				new LodPyramid(airportTable, airportRank.getOrder(),
+						lodCellPixels, lodFullDetailZoom, lodBudgets)));
+		step = 6;
+	}
+}
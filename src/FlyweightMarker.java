@@ -0,0 +1,236 @@
+package module6;
+
+import java.util.HashMap;
+
+import de.fhpotsdam.unfolding.geo.Location;
+import de.fhpotsdam.unfolding.marker.Marker;
+
+/**
+ * A Marker that is only a row of shared storage.
+ *
+ * Unfolding's markers each keep a Location, a HashMap of properties, their
+ * own flags and their own colors. A flyweight marker keeps a MarkerState
+ * and a row: the subclass reads the location and properties from the
+ * columns of its table, the hidden, selected and clicked flags are bits of
+ * the state's masks and the style is the state's. It is small enough to be
+ * created whenever a Marker is needed, e.g. for the airport under the
+ * mouse, and dropped again; flyweights of the same row are equal.
+ *
+ * The setters work as on any Marker but only for the marker's row: what
+ * is set goes into the row's MarkerState.Override and is read back before
+ * the table, so it outlives the flyweight and is seen by every flyweight
+ * of the row. The tables are never changed.
+ */
+public abstract class FlyweightMarker implements Marker {
+
+	protected final MarkerState state;
+	protected final int row;
+
+	protected FlyweightMarker(MarkerState state, int row) {
+		this.state = state;
+		this.row = row;
+	}
+
+	// the row of this marker in its table
+	public int getRow() {
+		return row;
+	}
+
+	// the id, location and properties of the row in the table
+	protected abstract String getTableId();
+
+	protected abstract float getTableLat();
+
+	protected abstract float getTableLon();
+
+	protected abstract Object getTableProperty(String key);
+
+	// the keys getTableProperty() knows, for getProperties()
+	protected abstract String[] getTablePropertyKeys();
+
+	@Override
+	public String getId() {
+		MarkerState.Override override = state.getOverride(row);
+		return override != null && override.id != null ? override.id : getTableId();
+	}
+
+	@Override
+	public void setId(String id) {
+		state.override(row).id = id;
+	}
+
+	public float getLat() {
+		MarkerState.Override override = state.getOverride(row);
+		return override != null && !Float.isNaN(override.lat) ? override.lat : getTableLat();
+	}
+
+	public float getLon() {
+		MarkerState.Override override = state.getOverride(row);
+		return override != null && !Float.isNaN(override.lon) ? override.lon : getTableLon();
+	}
+
+	// true if the marker was moved away from the location in its table
+	public boolean hasOwnLocation() {
+		MarkerState.Override override = state.getOverride(row);
+		return override != null && !Float.isNaN(override.lat);
+	}
+
+	// a new Location, the coordinates are kept in the table
+	@Override
+	public Location getLocation() {
+		return new Location(getLat(), getLon());
+	}
+
+	@Override
+	public void setLocation(float lat, float lng) {
+		MarkerState.Override override = state.override(row);
+		override.lat = lat;
+		override.lon = lng;
+	}
+
+	@Override
+	public void setLocation(Location location) {
+		setLocation(location.getLat(), location.getLon());
+	}
+
+	@Override
+	public double getDistanceTo(Location location) {
+		return getLocation().getDistance(location);
+	}
+
+	@Override
+	public Object getProperty(String key) {
+		MarkerState.Override override = state.getOverride(row);
+		if (override != null && override.properties != null
+				&& (override.replaced || override.properties.containsKey(key))) {
+			return override.properties.get(key);
+		}
+		return getTableProperty(key);
+	}
+
+	// the properties set later are kept in addition to the table's, returns the previous value
+	@Override
+	public Object setProperty(String key, Object value) {
+		Object previous = getProperty(key);
+		MarkerState.Override override = state.override(row);
+		if (override.properties == null) {
+			override.properties = new HashMap<String, Object>();
+		}
+		override.properties.put(key, value);
+		return previous;
+	}
+
+	// the properties of the table are no longer seen
+	@Override
+	public void setProperties(HashMap<String, Object> properties) {
+		MarkerState.Override override = state.override(row);
+		override.properties = new HashMap<String, Object>(properties);
+		override.replaced = true;
+	}
+
+	// a new map of the properties, built from the table on every call
+	@Override
+	public HashMap<String, Object> getProperties() {
+		MarkerState.Override override = state.getOverride(row);
+		if (override != null && override.replaced) {
+			return new HashMap<String, Object>(override.properties);
+		}
+		HashMap<String, Object> properties = new HashMap<String, Object>();
+		for (String key : getTablePropertyKeys()) {
+			properties.put(key, getTableProperty(key));
+		}
+		if (override != null && override.properties != null) {
+			properties.putAll(override.properties);
+		}
+		return properties;
+	}
+
+	@Override
+	public String getStringProperty(String key) {
+		Object value = getProperty(key);
+		return value == null ? null : value.toString();
+	}
+
+	@Override
+	public Integer getIntegerProperty(String key) {
+		Object value = getProperty(key);
+		return value instanceof Integer ? (Integer) value : null;
+	}
+
+	// the flags are bits in the shared masks
+	@Override
+	public boolean isHidden() {
+		return !state.shown.get(row);
+	}
+
+	@Override
+	public void setHidden(boolean hidden) {
+		state.shown.set(row, !hidden);
+		state.changed();
+	}
+
+	@Override
+	public boolean isSelected() {
+		return state.selected.get(row);
+	}
+
+	@Override
+	public void setSelected(boolean selected) {
+		state.setSelected(row, selected);
+	}
+
+	// Getter method for clicked flag
+	public boolean getClicked() {
+		return state.clicked.get(row);
+	}
+
+	// Setter method for clicked flag
+	public void setClicked(boolean clicked) {
+		state.setClicked(row, clicked);
+	}
+
+	// selected and clicked markers are drawn with the highlight colors
+	protected boolean isHighlighted() {
+		return state.isHighlighted(row);
+	}
+
+	// the style is the state's until one of these gives the marker its own
+	@Override
+	public void setColor(int color) {
+		state.style(row).color = color;
+	}
+
+	@Override
+	public void setStrokeColor(int color) {
+		state.style(row).strokeColor = color;
+	}
+
+	@Override
+	public void setStrokeWeight(int weight) {
+		state.style(row).strokeWeight = weight;
+	}
+
+	@Override
+	public void setHighlightColor(int color) {
+		state.style(row).highlightColor = color;
+	}
+
+	@Override
+	public void setHighlightStrokeColor(int color) {
+		state.style(row).highlightStrokeColor = color;
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		if (other == null || other.getClass() != getClass()) {
+			return false;
+		}
+		FlyweightMarker marker = (FlyweightMarker) other;
+		return marker.state == state && marker.row == row;
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * System.identityHashCode(state) + row;
+	}
+}
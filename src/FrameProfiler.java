@@ -0,0 +1,169 @@
+package module6;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Times the phases of a frame with System.nanoTime().
+ *
+ * Every phase keeps its last CAPACITY timings in a ring buffer, for the
+ * rolling percentiles of the overlay, and all of its timings in a
+ * log-linear histogram, for export. Both are allocated up front, so
+ * start() and stop() only write into arrays.
+ *
+ * The histogram has SUB_BUCKETS buckets per power of two, which keeps
+ * every value within about 6% of its bucket, like an HdrHistogram with
+ * one significant digit.
+ */
+public class FrameProfiler {
+
+	// timings kept per phase for the rolling percentiles
+	public static final int CAPACITY = 512;
+
+	private static final int SUB_BITS = 4;
+	private static final int SUB_BUCKETS = 1 << SUB_BITS;
+	private static final int BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS;
+
+	private final String[] names;
+	private final long[][] ring;
+	private final int[] ringCount;
+	private final int[] ringNext;
+	private final long[][] histogram;
+	private final long[] startedAt;
+
+	// start of every frame, for the frame rate
+	private final long[] frameStart = new long[CAPACITY];
+	private int frameCount;
+
+	// scratch space for the percentiles, so they allocate nothing either
+	private final long[] sorted = new long[CAPACITY];
+
+	/*
+	 * @param names - names of the phases, phase i is the index of names[i]
+	 */
+	public FrameProfiler(String... names) {
+		this.names = names.clone();
+		int n = names.length;
+		ring = new long[n][CAPACITY];
+		ringCount = new int[n];
+		ringNext = new int[n];
+		histogram = new long[n][BUCKETS];
+		startedAt = new long[n];
+	}
+
+	public int phaseCount() {
+		return names.length;
+	}
+
+	public String getName(int phase) {
+		return names[phase];
+	}
+
+	// marks the start of a frame
+	public void startFrame() {
+		frameStart[frameCount % CAPACITY] = System.nanoTime();
+		frameCount++;
+	}
+
+	public void start(int phase) {
+		startedAt[phase] = System.nanoTime();
+	}
+
+	public void stop(int phase) {
+		record(phase, System.nanoTime() - startedAt[phase]);
+	}
+
+	public void record(int phase, long nanos) {
+		long[] times = ring[phase];
+		times[ringNext[phase]] = nanos;
+		ringNext[phase] = (ringNext[phase] + 1) % CAPACITY;
+		if (ringCount[phase] < CAPACITY) {
+			ringCount[phase]++;
+		}
+		histogram[phase][bucket(nanos)]++;
+	}
+
+	/*
+	 * Returns the timing below which the fraction of the phase's last
+	 * CAPACITY timings falls, in nanoseconds, or 0 if it has none.
+	 *
+	 * @param phase - index of the phase
+	 * @param fraction - 0.5 for the median, 0.99 for the 99th percentile
+	 */
+	public long percentile(int phase, double fraction) {
+		int count = ringCount[phase];
+		if (count == 0) {
+			return 0;
+		}
+		System.arraycopy(ring[phase], 0, sorted, 0, count);
+		Arrays.sort(sorted, 0, count);
+		int index = (int) Math.ceil(fraction * count) - 1;
+		return sorted[Math.max(0, Math.min(count - 1, index))];
+	}
+
+	// frames per second over the last CAPACITY frames
+	public float framesPerSecond() {
+		int frames = Math.min(frameCount, CAPACITY);
+		if (frames < 2) {
+			return 0;
+		}
+		long last = frameStart[(frameCount - 1) % CAPACITY];
+		long first = frameStart[(frameCount - frames) % CAPACITY];
+		return (frames - 1) * 1e9f / Math.max(1, last - first);
+	}
+
+	// bucket of a timing: exact below 2 * SUB_BUCKETS, then SUB_BUCKETS steps per power of two
+	private static int bucket(long nanos) {
+		if (nanos < 2 * SUB_BUCKETS) {
+			return (int) Math.max(0, nanos);
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(nanos) - SUB_BITS;
+		return exponent * SUB_BUCKETS + (int) (nanos >>> exponent);
+	}
+
+	// smallest timing of a bucket
+	private static long bucketStart(int bucket) {
+		if (bucket < 2 * SUB_BUCKETS) {
+			return bucket;
+		}
+		if (bucket >= BUCKETS) {
+			return Long.MAX_VALUE;
+		}
+		int exponent = bucket / SUB_BUCKETS - 1;
+		return (long) (bucket % SUB_BUCKETS + SUB_BUCKETS) << exponent;
+	}
+
+	/*
+	 * Writes the histograms of all phases since the start as CSV, one line
+	 * per non-empty bucket, with the cumulative fraction like the percentile
+	 * distribution of an HdrHistogram log:
+	 * phase,from_ns,to_ns,count,percentile
+	 */
+	public void writeHistograms(Writer out) throws IOException {
+		PrintWriter csv = new PrintWriter(out);
+		csv.println("phase,from_ns,to_ns,count,percentile");
+		for (int phase = 0; phase < names.length; phase++) {
+			long total = 0;
+			for (long count : histogram[phase]) {
+				total += count;
+			}
+			long seen = 0;
+			for (int b = 0; b < BUCKETS; b++) {
+				long count = histogram[phase][b];
+				if (count == 0) {
+					continue;
+				}
+				seen += count;
+				csv.printf(Locale.ROOT, "%s,%d,%d,%d,%.6f%n", names[phase],
+						bucketStart(b), bucketStart(b + 1), count, (double) seen / total);
+			}
+		}
+		csv.flush();
+		if (csv.checkError()) {
+			throw new IOException("Could not write the histograms");
+		}
+	}
+}
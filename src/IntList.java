@@ -0,0 +1,52 @@
+package module6;
+
+import java.util.Arrays;
+
+/**
+ * A growable list of primitive ints.
+ * Used for row lists that are refilled often, so clear() keeps the storage.
+ */
+public class IntList {
+
+	private int[] values;
+	private int size;
+
+	public IntList() {
+		this(64);
+	}
+
+	public IntList(int capacity) {
+		values = new int[Math.max(capacity, 4)];
+	}
+
+	public void add(int value) {
+		if (size == values.length) {
+			values = Arrays.copyOf(values, size * 2);
+		}
+		values[size++] = value;
+	}
+
+	public int get(int index) {
+		if (index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+		return values[index];
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public void clear() {
+		size = 0;
+	}
+
+	// returns a copy of the values in the list
+	public int[] toArray() {
+		return Arrays.copyOf(values, size);
+	}
+}
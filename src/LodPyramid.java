@@ -0,0 +1,123 @@
+package module6;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import parsing.AirportTable;
+
+/**
+ * A level-of-detail pyramid deciding which airports are shown at each zoom level.
+ *
+ * The pyramid is built once: starting at zoom level 0, the world is cut
+ * into square cells of a fixed size on screen (in Web Mercator, like the
+ * map tiles) and every cell keeps at most one airport, until the budget of
+ * the level is used up. Airports chosen at a level stay chosen at all
+ * higher levels, and from fullDetailZoom on every airport is shown.
+ *
+ * Because the levels are nested, the rows are stored once, ordered by the
+ * level they first appear at: the airports of level z are the prefix
+ * rowAt(0) to rowAt(levelEnd(z)-1), and show() marks a level by setting
+ * the prefix in a mask.
+ */
+public class LodPyramid {
+
+	private static final int TILE_SIZE = 256;
+
+	private final int fullDetailZoom;
+	private final int[] order;
+	private final int[] levelEnd;
+
+	/*
+	 * @param table - airports to thin out
+	 * @param priority - all rows of the table, the ones to keep first at the front
+	 * @param cellPixels - size of a thinning cell on screen
+	 * @param fullDetailZoom - first zoom level that shows every airport
+	 * @param budgets - maximum number of airports shown at zoom level 0, 1, ...
+	 *   levels past the end of the array use its last value
+	 */
+	public LodPyramid(AirportTable table, int[] priority, int cellPixels, int fullDetailZoom, int[] budgets) {
+		int n = table.size();
+		this.fullDetailZoom = fullDetailZoom;
+		this.order = new int[n];
+		this.levelEnd = new int[fullDetailZoom + 1];
+
+		// position of every airport in the unit square of the Mercator world,
+		// the same projection the map and the visibility worker use
+		float[] x = MapProjection.mercatorX(table);
+		float[] y = MapProjection.mercatorY(table);
+
+		boolean[] chosen = new boolean[n];
+		int count = 0;
+		for (int z = 0; z < fullDetailZoom; z++) {
+			int budget = budgets[Math.min(z, budgets.length - 1)];
+			int across = Math.max(1, (TILE_SIZE << z) / cellPixels);
+			BitSet occupied = new BitSet(across * across);
+
+			// airports from the coarser levels keep their cells
+			for (int i = 0; i < count; i++) {
+				occupied.set(cellOf(x[order[i]], y[order[i]], across));
+			}
+			for (int p = 0; p < priority.length && count < budget; p++) {
+				int row = priority[p];
+				if (chosen[row]) {
+					continue;
+				}
+				int cell = cellOf(x[row], y[row], across);
+				if (!occupied.get(cell)) {
+					occupied.set(cell);
+					chosen[row] = true;
+					order[count++] = row;
+				}
+			}
+			levelEnd[z] = count;
+		}
+
+		// everything else appears at full detail
+		for (int p = 0; p < priority.length; p++) {
+			if (!chosen[priority[p]]) {
+				order[count++] = priority[p];
+			}
+		}
+		levelEnd[fullDetailZoom] = count;
+	}
+
+	private static int cellOf(float x, float y, int across) {
+		int col = Math.min(across - 1, Math.max(0, (int) (x * across)));
+		int row = Math.min(across - 1, Math.max(0, (int) (y * across)));
+		return row * across + col;
+	}
+
+	// returns a priority array with the rows of the table in table order
+	public static int[] tableOrder(AirportTable table) {
+		int[] rows = new int[table.size()];
+		Arrays.setAll(rows, i -> i);
+		return rows;
+	}
+
+	public int getFullDetailZoom() {
+		return fullDetailZoom;
+	}
+
+	// number of airports shown at the zoom level
+	public int levelEnd(int zoomLevel) {
+		return levelEnd[Math.max(0, Math.min(fullDetailZoom, zoomLevel))];
+	}
+
+	// the i-th airport in the order airports appear when zooming in
+	public int rowAt(int i) {
+		return order[i];
+	}
+
+	// sets exactly the airports of the zoom level in shown, all of them at full detail
+	public void show(int zoomLevel, BitMask shown) {
+		int level = Math.max(0, Math.min(fullDetailZoom, zoomLevel));
+		if (level == fullDetailZoom) {
+			shown.setAll();
+			return;
+		}
+		shown.clearAll();
+		for (int i = 0; i < levelEnd[level]; i++) {
+			shown.set(order[i]);
+		}
+	}
+}
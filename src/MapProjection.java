@@ -0,0 +1,140 @@
+package module6;
+
+import de.fhpotsdam.unfolding.UnfoldingMap;
+import de.fhpotsdam.unfolding.geo.Location;
+import de.fhpotsdam.unfolding.utils.ScreenPosition;
+import parsing.AirportTable;
+
+/**
+ * Web Mercator coordinates and the screen transform of a map view.
+ *
+ * A location is turned into Mercator coordinates once: x and y in the unit
+ * square of the world, x growing east and y growing south. For a given
+ * zoom and pan of the map, screen positions are then a scale and an offset
+ * away, so projecting many points costs a multiply and an add each instead
+ * of the logarithm and tangent of the projection. project() does this for
+ * whole arrays at once, see ScreenPositions.
+ */
+public class MapProjection {
+
+	// the latitude where the Web Mercator world is square
+	public static final float MAX_LATITUDE = 85.0511f;
+
+	// locations the transform of a map is fitted to
+	private static final Location FIT_A = new Location(-60, -90);
+	private static final Location FIT_B = new Location(60, 90);
+
+	private float scaleX;
+	private float scaleY;
+	private float offsetX;
+	private float offsetY;
+
+	public static float mercatorX(float lon) {
+		return (lon + 180) / 360;
+	}
+
+	public static float mercatorY(float lat) {
+		double r = Math.toRadians(Math.max(-MAX_LATITUDE, Math.min(MAX_LATITUDE, lat)));
+		return (float) ((1 - Math.log(Math.tan(r) + 1 / Math.cos(r)) / Math.PI) / 2);
+	}
+
+	// the longitude of a Mercator x, the inverse of mercatorX()
+	public static float longitude(float mercatorX) {
+		return mercatorX * 360 - 180;
+	}
+
+	// the latitude of a Mercator y, the inverse of mercatorY()
+	public static float latitude(float mercatorY) {
+		return (float) Math.toDegrees(Math.atan(Math.sinh(Math.PI * (1 - 2 * mercatorY))));
+	}
+
+	// Mercator x of every airport, by row
+	public static float[] mercatorX(AirportTable table) {
+		float[] x = new float[table.size()];
+		for (int row = 0; row < x.length; row++) {
+			x[row] = mercatorX(table.getLon(row));
+		}
+		return x;
+	}
+
+	// Mercator y of every airport, by row
+	public static float[] mercatorY(AirportTable table) {
+		float[] y = new float[table.size()];
+		for (int row = 0; row < y.length; row++) {
+			y[row] = mercatorY(table.getLat(row));
+		}
+		return y;
+	}
+
+	/*
+	 * Takes the transform from the current view of the map, by asking it
+	 * for the screen positions of two fixed locations.
+	 */
+	public void update(UnfoldingMap map) {
+		ScreenPosition pa = map.getScreenPosition(FIT_A);
+		ScreenPosition pb = map.getScreenPosition(FIT_B);
+		fit(pa.x, pa.y, pb.x, pb.y);
+	}
+
+	// the same to the map's object coordinates, which markers draw in
+	public void updateObject(UnfoldingMap map) {
+		float[] pa = map.mapDisplay.getObjectFromLocation(FIT_A);
+		float[] pb = map.mapDisplay.getObjectFromLocation(FIT_B);
+		fit(pa[0], pa[1], pb[0], pb[1]);
+	}
+
+	// sets the transform that takes FIT_A and FIT_B to the given positions
+	private void fit(float pax, float pay, float pbx, float pby) {
+		float ax = mercatorX(FIT_A.getLon());
+		float ay = mercatorY(FIT_A.getLat());
+		float bx = mercatorX(FIT_B.getLon());
+		float by = mercatorY(FIT_B.getLat());
+		scaleX = (pbx - pax) / (bx - ax);
+		scaleY = (pby - pay) / (by - ay);
+		offsetX = pax - ax * scaleX;
+		offsetY = pay - ay * scaleY;
+	}
+
+	// sets the transform directly, e.g. for a view without a map
+	public void set(float scaleX, float scaleY, float offsetX, float offsetY) {
+		this.scaleX = scaleX;
+		this.scaleY = scaleY;
+		this.offsetX = offsetX;
+		this.offsetY = offsetY;
+	}
+
+	// width of the whole world on the screen, in pixels
+	public float worldWidth() {
+		return scaleX;
+	}
+
+	public float screenX(float mercatorX) {
+		return mercatorX * scaleX + offsetX;
+	}
+
+	public float screenY(float mercatorY) {
+		return mercatorY * scaleY + offsetY;
+	}
+
+	/*
+	 * Projects the Mercator coordinates of the indexes from (inclusive) to
+	 * (exclusive) to the screen. Each axis is a plain loop over arrays with
+	 * the transform in locals, which the JIT compiles to vector instructions.
+	 *
+	 * @param mercatorX, mercatorY - coordinates to project
+	 * @param screenX, screenY - receive the screen positions at the same indexes
+	 */
+	public void project(float[] mercatorX, float[] mercatorY, float[] screenX, float[] screenY,
+			int from, int to) {
+		float sx = scaleX;
+		float ox = offsetX;
+		for (int i = from; i < to; i++) {
+			screenX[i] = mercatorX[i] * sx + ox;
+		}
+		float sy = scaleY;
+		float oy = offsetY;
+		for (int i = from; i < to; i++) {
+			screenY[i] = mercatorY[i] * sy + oy;
+		}
+	}
+}
@@ -0,0 +1,225 @@
+package module6;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+
+import processing.core.PGraphics;
+
+/**
+ * Flags and style shared by the flyweight markers of one table, see FlyweightMarker.
+ *
+ * The hidden, selected and clicked flags of every row are bits of three
+ * masks, so a million markers take three bits each instead of an object.
+ * Colors and the stroke weight are shared by all markers of the state.
+ *
+ * A marker that is given its own id, location, properties or style gets an
+ * Override, kept in a sparse map by row; the overridden mask marks the
+ * rows that have one, so batch drawing can skip them without a lookup and
+ * draw them one by one. The rows that are selected or clicked are listed
+ * too, so they can be drawn on top without going over the masks.
+ * getVersion() changes whenever something is set that changes how the
+ * markers are drawn, except for the selection, so a cached drawing knows
+ * when it has to be redrawn.
+ */
+public class MarkerState {
+
+	/** What was set on the marker of one row, the rest comes from its table and the state */
+	public static class Override {
+		// null and NaN if not set
+		public String id;
+		public float lat = Float.NaN;
+		public float lon = Float.NaN;
+
+		// properties set on the marker, in addition to the table's or, if replaced, instead of them
+		public HashMap<String, Object> properties;
+		public boolean replaced;
+
+		// the marker's own style, used if styled
+		public boolean styled;
+		public int color;
+		public int strokeColor;
+		public int highlightColor;
+		public int highlightStrokeColor;
+		public int strokeWeight;
+	}
+
+	// one bit per row: not hidden, selected, clicked and has an Override
+	public final BitMask shown;
+	public final BitMask selected;
+	public final BitMask clicked;
+	public final BitMask overridden;
+
+	// style of the markers, highlighted markers use the highlight colors
+	private int color = 0xFFFFFFFF;
+	private int strokeColor = 0xFF000000;
+	private int highlightColor = 0xFFFFFFFF;
+	private int highlightStrokeColor = 0xFF000000;
+	private int strokeWeight = 1;
+
+	private final HashMap<Integer, Override> overrides = new HashMap<Integer, Override>();
+	private int version;
+
+	// rows that are selected or clicked, in no particular order
+	private int[] highlighted = new int[4];
+	private int highlightedCount;
+
+	// every row starts hidden
+	public MarkerState(int size) {
+		shown = new BitMask(size);
+		selected = new BitMask(size);
+		clicked = new BitMask(size);
+		overridden = new BitMask(size);
+	}
+
+	public int size() {
+		return shown.size();
+	}
+
+	// changes whenever the markers have to be drawn again, see the class comment
+	public int getVersion() {
+		return version;
+	}
+
+	// to be called after changing something the version covers, e.g. the shown mask
+	public void changed() {
+		version++;
+	}
+
+	// the row's Override, or null if it has none
+	public Override getOverride(int row) {
+		return overridden.get(row) ? overrides.get(row) : null;
+	}
+
+	// the row's Override, created if it has none; the caller changes it right away
+	public Override override(int row) {
+		Override override = getOverride(row);
+		if (override == null) {
+			override = new Override();
+			overrides.put(row, override);
+			overridden.set(row);
+		}
+		changed();
+		return override;
+	}
+
+	// the row's Override with a style of its own, starting from the shared style
+	public Override style(int row) {
+		Override override = override(row);
+		if (!override.styled) {
+			override.styled = true;
+			override.color = color;
+			override.strokeColor = strokeColor;
+			override.highlightColor = highlightColor;
+			override.highlightStrokeColor = highlightStrokeColor;
+			override.strokeWeight = strokeWeight;
+		}
+		return override;
+	}
+
+	// the rows that have an Override
+	public Collection<Integer> overriddenRows() {
+		return Collections.unmodifiableSet(overrides.keySet());
+	}
+
+	public void setSelected(int row, boolean value) {
+		boolean wasHighlighted = isHighlighted(row);
+		selected.set(row, value);
+		updateHighlighted(row, wasHighlighted);
+	}
+
+	public void setClicked(int row, boolean value) {
+		boolean wasHighlighted = isHighlighted(row);
+		clicked.set(row, value);
+		updateHighlighted(row, wasHighlighted);
+	}
+
+	// selected and clicked markers are drawn with the highlight colors
+	public boolean isHighlighted(int row) {
+		return selected.get(row) || clicked.get(row);
+	}
+
+	private void updateHighlighted(int row, boolean wasHighlighted) {
+		boolean highlight = isHighlighted(row);
+		if (highlight && !wasHighlighted) {
+			if (highlightedCount == highlighted.length) {
+				highlighted = Arrays.copyOf(highlighted, highlightedCount * 2);
+			}
+			highlighted[highlightedCount++] = row;
+		} else if (!highlight && wasHighlighted) {
+			for (int i = 0; i < highlightedCount; i++) {
+				if (highlighted[i] == row) {
+					highlighted[i] = highlighted[--highlightedCount];
+					break;
+				}
+			}
+		}
+	}
+
+	// number of rows that are selected or clicked
+	public int highlightedCount() {
+		return highlightedCount;
+	}
+
+	// the i-th row that is selected or clicked
+	public int getHighlighted(int i) {
+		return highlighted[i];
+	}
+
+	// the shared style, for every marker without a style of its own
+	public void setColor(int color) {
+		this.color = color;
+		changed();
+	}
+
+	public void setStrokeColor(int strokeColor) {
+		this.strokeColor = strokeColor;
+		changed();
+	}
+
+	public void setHighlightColor(int highlightColor) {
+		this.highlightColor = highlightColor;
+		changed();
+	}
+
+	public void setHighlightStrokeColor(int highlightStrokeColor) {
+		this.highlightStrokeColor = highlightStrokeColor;
+		changed();
+	}
+
+	public void setStrokeWeight(int strokeWeight) {
+		this.strokeWeight = strokeWeight;
+		changed();
+	}
+
+	// stroke weight of the row's marker
+	public int getStrokeWeight(int row) {
+		Override override = getOverride(row);
+		return override != null && override.styled ? override.strokeWeight : strokeWeight;
+	}
+
+	/*
+	 * Sets the fill, stroke and stroke weight shared by the markers.
+	 *
+	 * @param pg - graphics to draw the markers into
+	 * @param highlighted - true to use the highlight colors
+	 */
+	public void applyStyle(PGraphics pg, boolean highlighted) {
+		pg.fill(highlighted ? highlightColor : color);
+		pg.stroke(highlighted ? highlightStrokeColor : strokeColor);
+		pg.strokeWeight(strokeWeight);
+	}
+
+	// the same for the marker of one row, with its own style if it has one
+	public void applyStyle(PGraphics pg, int row, boolean highlighted) {
+		Override override = getOverride(row);
+		if (override == null || !override.styled) {
+			applyStyle(pg, highlighted);
+			return;
+		}
+		pg.fill(highlighted ? override.highlightColor : override.color);
+		pg.stroke(highlighted ? override.highlightStrokeColor : override.strokeColor);
+		pg.strokeWeight(override.strokeWeight);
+	}
+}
@@ -1,6 +1,7 @@
 package parsing;
 
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -10,121 +11,20 @@ import de.fhpotsdam.unfolding.data.PointFeature;
 import de.fhpotsdam.unfolding.data.ShapeFeature;
 import de.fhpotsdam.unfolding.geo.Location;
 import processing.core.PApplet;
-import processing.data.XML;
 
 public class ParseFeed {
 
 
 	/*
 	 * This method is to parse a GeoRSS feed corresponding to earthquakes around
-	 * the globe.
+	 * the globe. The feed is streamed, see EarthquakeReader for reading feeds
+	 * too large to keep in a list or for refreshing a feed incrementally.
 	 * 
 	 * @param p - PApplet being used
 	 * @param fileName - file name or URL for data source
 	 */
 	public static List<PointFeature> parseEarthquake(PApplet p, String fileName) {
-		List<PointFeature> features = new ArrayList<PointFeature>();
-
-		XML rss = p.loadXML(fileName);
-		// Get all items
-		XML[] itemXML = rss.getChildren("entry");
-		PointFeature point;
-		
-		for (int i = 0; i < itemXML.length; i++) {
-			
-				// get location and create feature
-				Location location = getLocationFromPoint(itemXML[i]);
-				
-				// if successful create PointFeature and add to list
-				if( location != null) {
-					point = new PointFeature(location);
-					features.add(point);
-				}
-				else {
-					continue;
-				}
-
-				// Sets title if existing
-				String titleStr = getStringVal(itemXML[i], "title");
-				if (titleStr != null) {
-					point.putProperty("title", titleStr);
-					// get magnitude from title
-					point.putProperty("magnitude", Float.parseFloat(titleStr.substring(2, 5)));
-				}
-
-				// Sets depth(elevation) if existing
-				float depthVal = getFloatVal(itemXML[i], "georss:elev");
-				
-				// NOT SURE ABOUT CHECKING ERR CONDITION BECAUSE 0 COULD BE VALID?
-				// get one decimal place when converting to km
-				int interVal = (int)(depthVal/100);
-				depthVal = (float) interVal/10;
-				point.putProperty("depth", Math.abs((depthVal)));
-				
-
-				// Sets age if existing
-				XML[] catXML = itemXML[i].getChildren("category");
-				for (int c = 0; c < catXML.length; c++) {
-					String label = catXML[c].getString("label");
-					if ("Age".equals(label)) {
-						String ageStr = catXML[c].getString("term");
-						point.putProperty("age", ageStr);
-					}
-				}
-		
-
-			}
-		
-			return features;
-		}
-
-	
-	/*
-	 * Gets location from georss:point tag
-	 * 
-	 * @param XML Node which has point as child
-	 * 
-	 * @return Location object corresponding to point
-	 */
-	private static Location getLocationFromPoint(XML itemXML) {
-		// set loc to null in case of failure
-		Location loc = null;
-		XML pointXML = itemXML.getChild("georss:point");
-		
-		// set location if existing
-		if (pointXML != null && pointXML.getContent() != null) {
-			String pointStr = pointXML.getContent();
-			String[] latLon = pointStr.split(" ");
-			float lat = Float.valueOf(latLon[0]);
-			float lon = Float.valueOf(latLon[1]);
-
-			loc = new Location(lat, lon);
-		}
-		
-		return loc;
-	}	
-	
-	/*
-	 * Get String content from child node.
-	 */
-	private static String getStringVal(XML itemXML, String tagName) {
-		// Sets title if existing
-		String str = null;
-		XML strXML = itemXML.getChild(tagName);
-		
-		// check if node exists and has content
-		if (strXML != null && strXML.getContent() != null) {
-			str = strXML.getContent();
-		}
-		
-		return str;
-	}
-	
-	/*
-	 * Get float value from child node
-	 */
-	private static float getFloatVal(XML itemXML, String tagName) {
-		return Float.parseFloat(getStringVal(itemXML, tagName));
+		return new EarthquakeReader().read(p, fileName);
 	}
 	
 
@@ -139,44 +39,35 @@ public class ParseFeed {
 	 * @param fileName - file name or URL for data source
 	 */
 	public static List<PointFeature> parseAirports(PApplet p, String fileName) {
-		List<PointFeature> features = new ArrayList<PointFeature>();
+		ColumnTable table = airportSchema().load(p, fileName);
+		List<PointFeature> features = new ArrayList<PointFeature>(table.size());
 
-		String[] rows = p.loadStrings(fileName);
-		for (String row : rows) {
-			
-			// hot-fix for altitude when lat lon out of place
-			int i = 0;
-			
-			// split row by commas not in quotations
-			String[] columns = row.split(",(?=([^\"]*\"[^\"]*\")*[^\"]*$)");
+		for (int row = 0; row < table.size(); row++) {
 			
 			// get location and create feature
-			//System.out.println(columns[6]);
-			float lat = Float.parseFloat(columns[6]);
-			float lon = Float.parseFloat(columns[7]);
-			
-			Location loc = new Location(lat, lon);
+			Location loc = new Location(table.getFloat(AIRPORT_LAT, row), table.getFloat(AIRPORT_LON, row));
 			PointFeature point = new PointFeature(loc);
 			
 			// set ID to OpenFlights unique identifier
-			point.setId(columns[0]);
+			point.setId(Integer.toString(table.getInt(AIRPORT_ID, row)));
 			
-			// get other fields from csv
-			point.addProperty("name", columns[1].replace("\"", ""));
-			point.putProperty("city", columns[2].replace("\"", ""));
-			point.putProperty("country", columns[3].replace("\"", ""));
+			// get other fields from the table
+			point.addProperty("name", table.getString(AIRPORT_NAME, row));
+			point.putProperty("city", table.getString(AIRPORT_CITY, row));
+			point.putProperty("country", table.getString(AIRPORT_COUNTRY, row));
 			
 			// pretty sure IATA/FAA is used in routes.dat
-			// get airport IATA/FAA code
-			if(!columns[4].equals("")) {
-				point.putProperty("code", columns[4].replace("\"", ""));
+			// get airport IATA/FAA code, or ICAO code if no IATA
+			if (!table.isNull(AIRPORT_IATA, row)) {
+				point.putProperty("code", table.getString(AIRPORT_IATA, row));
 			}
-			// get airport ICAO code if no IATA
-			else if(!columns[5].equals("")) {
-				point.putProperty("code", columns[5].replace("\"", ""));
+			else if (!table.isNull(AIRPORT_ICAO, row)) {
+				point.putProperty("code", table.getString(AIRPORT_ICAO, row));
 			}
 			
-			point.putProperty("altitude", columns[8 + i]);
+			if (!table.isNull(AIRPORT_ALTITUDE, row)) {
+				point.putProperty("altitude", table.getInt(AIRPORT_ALTITUDE, row));
+			}
 			
 			features.add(point);
 		}
@@ -185,6 +76,99 @@ public class ParseFeed {
 		
 	}
 	
+	// columns of airportSchema()
+	private static final int AIRPORT_ID = 0;
+	private static final int AIRPORT_NAME = 1;
+	private static final int AIRPORT_CITY = 2;
+	private static final int AIRPORT_COUNTRY = 3;
+	private static final int AIRPORT_IATA = 4;
+	private static final int AIRPORT_ICAO = 5;
+	private static final int AIRPORT_LAT = 6;
+	private static final int AIRPORT_LON = 7;
+	private static final int AIRPORT_ALTITUDE = 8;
+	
+	/*
+	 * The fields of airports.dat that parseAirports and parseAirportTable use,
+	 * the timezone fields after the altitude are skipped. Names and codes
+	 * are mostly distinct and kept as text, cities and countries repeat.
+	 */
+	public static TableSchema airportSchema() {
+		return new TableSchema()
+				.intColumn("id", 0)
+				.textColumn("name", 1)
+				.stringColumn("city", 2)
+				.stringColumn("country", 3)
+				.textColumn("iata", 4)
+				.textColumn("icao", 5)
+				.floatColumn("latitude", 6)
+				.floatColumn("longitude", 7)
+				.intColumn("altitude", 8);
+	}
+	
+	
+
+	/*
+	 * This method is to parse a file containing airport information
+	 * into a columnar AirportTable, which markers and routes reference by row.
+	 * The file format is the same as for parseAirports.
+	 * 
+	 * @param p - PApplet being used
+	 * @param fileName - file name or URL for data source
+	 */
+	public static AirportTable parseAirportTable(PApplet p, String fileName) {
+		return parseAirportTable(CsvTokenizer.open(p, fileName));
+	}
+	
+	/*
+	 * Parses airport rows from a tokenizer, e.g. one reading a file channel
+	 * when there is no PApplet. The rows are loaded with airportSchema()
+	 * and the columns handed to the table in bulk; names and codes go from
+	 * the row bytes to the table without a String. Airports without an id
+	 * or coordinates are skipped.
+	 * 
+	 * @param csv - tokenizer positioned before the first row
+	 */
+	public static AirportTable parseAirportTable(CsvTokenizer csv) {
+		ColumnTable columns = airportSchema().load(csv);
+		int size = 0;
+		int[] id = new int[columns.size()];
+		float[] lat = new float[columns.size()];
+		float[] lon = new float[columns.size()];
+		short[] altitude = new short[columns.size()];
+		int[] city = new int[columns.size()];
+		int[] country = new int[columns.size()];
+		TextColumn name = new TextColumn(columns.size());
+		TextColumn code = new TextColumn(columns.size());
+
+		// cities and countries share one dictionary in the table
+		StringDictionary places = new StringDictionary();
+		int[] cityCodes = places.merge(columns.getDictionary(AIRPORT_CITY));
+		int[] countryCodes = places.merge(columns.getDictionary(AIRPORT_COUNTRY));
+
+		for (int row = 0; row < columns.size(); row++) {
+			if (columns.isNull(AIRPORT_ID, row) || columns.isNull(AIRPORT_LAT, row) 
+					|| columns.isNull(AIRPORT_LON, row)) {
+				continue;
+			}
+			id[size] = columns.getInt(AIRPORT_ID, row);
+			lat[size] = columns.getFloat(AIRPORT_LAT, row);
+			lon[size] = columns.getFloat(AIRPORT_LON, row);
+			// altitudes are in feet, the highest airports are around 14,500
+			int alt = columns.isNull(AIRPORT_ALTITUDE, row) ? 0 : columns.getInt(AIRPORT_ALTITUDE, row);
+			altitude[size] = (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, alt));
+			city[size] = columns.isNull(AIRPORT_CITY, row) ? -1 : cityCodes[columns.getCode(AIRPORT_CITY, row)];
+			country[size] = columns.isNull(AIRPORT_COUNTRY, row) ? -1 
+					: countryCodes[columns.getCode(AIRPORT_COUNTRY, row)];
+			name.add(columns.getText(AIRPORT_NAME), row);
+			
+			// get airport IATA/FAA code, or ICAO code if no IATA
+			code.add(columns.getText(columns.isNull(AIRPORT_IATA, row) ? AIRPORT_ICAO : AIRPORT_IATA), row);
+			size++;
+		}
+
+		return new AirportTable(size, id, lat, lon, altitude, name, city, country, places, code);
+	}
+	
 	
 
 	/*
@@ -198,33 +182,103 @@ public class ParseFeed {
 	 * @param fileName - file name or URL for data source
 	 */
 	public static List<ShapeFeature> parseRoutes(PApplet p, String fileName) {
-		List<ShapeFeature> routes = new ArrayList<ShapeFeature>();
+		ColumnTable table = routeSchema().load(p, fileName);
+		List<ShapeFeature> routes = new ArrayList<ShapeFeature>(table.size());
 		
-		String[] rows = p.loadStrings(fileName);
-		
-		for(String row : rows) {
-			String[] columns = row.split(",");
-			
-			ShapeFeature route = new ShapeFeature(Feature.FeatureType.LINES);
-			
-			// set id to be OpenFlights identifier for source airport
+		for (int row = 0; row < table.size(); row++) {
 			
 			// check that both airports on route have OpenFlights Identifier
-			if(!columns[3].equals("\\N") && !columns[5].equals("\\N")){
+			if (!table.isNull(ROUTE_SOURCE, row) && !table.isNull(ROUTE_DEST, row)) {
+				ShapeFeature route = new ShapeFeature(Feature.FeatureType.LINES);
+				
 				// set "source" property to be OpenFlights identifier for source airport
-				route.putProperty("source", columns[3]);
+				route.putProperty("source", Integer.toString(table.getInt(ROUTE_SOURCE, row)));
 				// "destination property" -- OpenFlights identifier
-				route.putProperty("destination", columns[5]);
+				route.putProperty("destination", Integer.toString(table.getInt(ROUTE_DEST, row)));
 				
 				routes.add(route);
 			}
 		}
-			
 		
 		return routes;
 		
+	}
+	
+	// columns of routeSchema()
+	private static final int ROUTE_AIRLINE = 0;
+	private static final int ROUTE_SOURCE = 1;
+	private static final int ROUTE_DEST = 2;
+	private static final int ROUTE_STOPS = 3;
+	private static final int ROUTE_EQUIPMENT = 4;
+	
+	/*
+	 * The fields of routes.dat that parseRoutes and parseRouteTable use:
+	 * the airline, the OpenFlights identifiers of the source and destination
+	 * airport, the number of stops and the aircraft.
+	 */
+	public static TableSchema routeSchema() {
+		return new TableSchema()
+				.stringColumn("airline", 0)
+				.intColumn("source", 3)
+				.intColumn("destination", 5)
+				.intColumn("stops", 7)
+				.stringColumn("equipment", 8);
+	}
+	
+	
+
+	/*
+	 * This method is to parse a file containing airport route information
+	 * into a columnar RouteTable. Routes without an OpenFlights identifier
+	 * for both airports are skipped, as in parseRoutes.
+	 * 
+	 * @param p - PApplet being used
+	 * @param fileName - file name or URL for data source
+	 */
+	public static RouteTable parseRouteTable(PApplet p, String fileName) {
 		
+		// local files are split into chunks and parsed in parallel
+		File file = p.dataFile(fileName);
+		if (file != null && file.isFile()) {
+			return RouteLoader.load(file);
+		}
 		
+		// anything else (e.g. a URL) is streamed on this thread
+		return parseRouteTable(CsvTokenizer.open(p, fileName));
+	}
+	
+	/*
+	 * Parses route rows from a tokenizer, e.g. one reading a chunk of the file.
+	 * The rows are loaded with routeSchema(), whose dictionaries become the
+	 * table's. Routes without an OpenFlights identifier for both airports
+	 * are skipped; missing stops count as 0, a missing airline or aircraft
+	 * is RouteTable.NO_CODE.
+	 * 
+	 * @param csv - tokenizer positioned before the first row
+	 */
+	public static RouteTable parseRouteTable(CsvTokenizer csv) {
+		ColumnTable columns = routeSchema().load(csv);
+		int size = 0;
+		int[] airline = new int[columns.size()];
+		int[] sourceId = new int[columns.size()];
+		int[] destId = new int[columns.size()];
+		byte[] stops = new byte[columns.size()];
+		int[] equipment = new int[columns.size()];
+		for (int row = 0; row < columns.size(); row++) {
+			if (columns.isNull(ROUTE_SOURCE, row) || columns.isNull(ROUTE_DEST, row)) {
+				continue;
+			}
+			// the null code of the columns is the table's NO_CODE
+			airline[size] = columns.getCode(ROUTE_AIRLINE, row);
+			sourceId[size] = columns.getInt(ROUTE_SOURCE, row);
+			destId[size] = columns.getInt(ROUTE_DEST, row);
+			stops[size] = (byte) (columns.isNull(ROUTE_STOPS, row) ? 0 
+					: Math.min(columns.getInt(ROUTE_STOPS, row), Byte.MAX_VALUE));
+			equipment[size] = columns.getCode(ROUTE_EQUIPMENT, row);
+			size++;
+		}
+		return new RouteTable(size, airline, sourceId, destId, stops, equipment,
+				columns.getDictionary(ROUTE_AIRLINE), columns.getDictionary(ROUTE_EQUIPMENT));
 	}
 	
 	
@@ -245,38 +299,36 @@ public class ParseFeed {
 	public static HashMap<String, Float> loadLifeExpectancyFromCSV(PApplet p, String fileName) {
 		// HashMap key: country ID and  data: lifeExp at birth
 		HashMap<String, Float> lifeExpMap = new HashMap<String, Float>();
-
-		// get lines of csv file
-		String[] rows = p.loadStrings(fileName);
 		
-		// Reads country name and population density value from CSV row
-		for (String row : rows) {
-			// split row by commas not in quotations
-			String[] columns = row.split(",(?=([^\"]*\"[^\"]*\")*[^\"]*$)");
+		ColumnTable table = loadLifeExpectancy(p, fileName);
+		for (int row = 0; row < table.size(); row++) {
 			
-			// check if there is any life expectancy data from any year, get most recent
-			/*
-			 * EXTENSION: Add code to also get the year the data is from.
-			 * You may want to use a list of Floats as the  values for the HashMap
-			 * and store the year as the second value. (There are many other ways to do this)
-			 */
-			//
-			for(int i = columns.length - 1; i > 3; i--) {
-				
-				// check if value exists for year
-				if(!columns[i].equals("..")) {
-					lifeExpMap.put(columns[3], Float.parseFloat(columns[i]));
-					
-					// break once most recent data is found
-					break;
-				}
+			// get the most recent year with data, if there is any
+			int year = table.lastInSeries(row);
+			if (!table.isNull(0, row) && year >= 0) {
+				lifeExpMap.put(table.getString(0, row), table.getSeries(row, year));
 			}
-			
 		}
 
 		return lifeExpMap;
 	}
 	
+	/*
+	 * Loads the life expectancy file with every year kept: column 0 is the
+	 * country ID, the series holds one value per year (NaN for ..), labelled
+	 * with the year when the file has a header row.
+	 * 
+	 * @param p - PApplet being used
+	 * @param fileName - file name or URL for data source
+	 */
+	public static ColumnTable loadLifeExpectancy(PApplet p, String fileName) {
+		return new TableSchema()
+				.optionalHeader()
+				.stringColumn("country", 3)
+				.series("lifeExpectancy", 4)
+				.load(p, fileName);
+	}
+	
 	
 
 }
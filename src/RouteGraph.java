@@ -0,0 +1,100 @@
+package module6;
+
+/**
+ * Compressed-sparse-row adjacency of the route network.
+ *
+ * Routes are grouped by the row of their source airport: the outgoing
+ * routes of airport a are the edges offsets[a] to offsets[a+1]-1, where
+ * targets[e] is the row of the destination airport and routeIds[e] is the
+ * index of the route in the route list. Endpoints are resolved once when
+ * the graph is built, so walking the neighbours of an airport needs no
+ * parsing or lookups.
+ */
+public class RouteGraph {
+
+	private final int[] offsets;
+	private final int[] targets;
+	private final int[] routeIds;
+
+	/*
+	 * Builds the graph with a counting sort over the source rows.
+	 * Route i goes from sourceRows[i] to destRows[i]; both must be valid rows.
+	 *
+	 * @param airportCount - number of rows in the airport table
+	 * @param sourceRows - source airport row of each route
+	 * @param destRows - destination airport row of each route
+	 * @param routeCount - number of routes in the two arrays
+	 */
+	public RouteGraph(int airportCount, int[] sourceRows, int[] destRows, int routeCount) {
+		offsets = new int[airportCount + 1];
+		targets = new int[routeCount];
+		routeIds = new int[routeCount];
+
+		for (int i = 0; i < routeCount; i++) {
+			offsets[sourceRows[i] + 1]++;
+		}
+		for (int a = 0; a < airportCount; a++) {
+			offsets[a + 1] += offsets[a];
+		}
+
+		// next free edge slot of every airport
+		int[] next = new int[airportCount];
+		System.arraycopy(offsets, 0, next, 0, airportCount);
+		for (int i = 0; i < routeCount; i++) {
+			int e = next[sourceRows[i]]++;
+			targets[e] = destRows[i];
+			routeIds[e] = i;
+		}
+	}
+
+	public int airportCount() {
+		return offsets.length - 1;
+	}
+
+	public int routeCount() {
+		return targets.length;
+	}
+
+	// index of the first outgoing edge of the airport
+	public int firstEdge(int airportRow) {
+		return offsets[airportRow];
+	}
+
+	// index one past the last outgoing edge of the airport
+	public int endEdge(int airportRow) {
+		return offsets[airportRow + 1];
+	}
+
+	// number of routes leaving the airport
+	public int outDegree(int airportRow) {
+		return offsets[airportRow + 1] - offsets[airportRow];
+	}
+
+	// row of the destination airport of the edge
+	public int target(int edge) {
+		return targets[edge];
+	}
+
+	// index of the route of the edge in the route list
+	public int routeId(int edge) {
+		return routeIds[edge];
+	}
+
+	/*
+	 * Sets the edges whose source and destination airports are both in
+	 * airports and clears all others. Edges are numbered like the graph
+	 * stores them, so the edges of an airport are a range of bits: the
+	 * ranges of the selected airports are set word by word, then ANDed
+	 * with the mask of edges whose target is selected.
+	 *
+	 * @param airports - mask over airport rows
+	 * @param edges - mask over edges, overwritten with the result
+	 */
+	public void selectEdges(BitMask airports, BitMask edges) {
+		edges.clearAll();
+		for (int a = airports.nextSetBit(0); a >= 0; a = airports.nextSetBit(a + 1)) {
+			edges.setRange(offsets[a], offsets[a + 1]);
+		}
+		edges.andGather(airports, targets);
+	}
+}
@@ -0,0 +1,84 @@
+package module6;
+
+import processing.core.PApplet;
+import processing.core.PConstants;
+import processing.core.PGraphics;
+
+/**
+ * Draws all shown routes as one batch into an offscreen buffer.
+ *
+ * The lines of the routes are collected into a RouteLines whenever the
+ * view changes and handed to the layer, which renders them into the
+ * buffer in a single LINES shape per weight class. Every other frame only
+ * copies the buffer onto the screen, so the cost of an idle frame no
+ * longer depends on the number of routes.
+ *
+ * Coordinates are screen coordinates; the buffer covers the area of the
+ * map given to the constructor.
+ */
+public class RouteLayer {
+
+	private final PGraphics buffer;
+	private final float left;
+	private final float top;
+
+	private RouteLines lines = new RouteLines();
+	private boolean rendered;
+
+	/*
+	 * @param p - PApplet being used
+	 * @param left, top, width, height - area of the map on the screen
+	 */
+	public RouteLayer(PApplet p, float left, float top, int width, int height) {
+		this.buffer = p.createGraphics(width, height);
+		this.left = left;
+		this.top = top;
+	}
+
+	/*
+	 * Replaces the lines to draw, the buffer keeps its picture until the
+	 * next draw(). The lines must not be changed while the layer has them.
+	 */
+	public void setLines(RouteLines lines) {
+		this.lines = lines;
+		rendered = false;
+	}
+
+	public int lineCount() {
+		return lines.lineCount();
+	}
+
+	/*
+	 * Draws the lines into the buffer, if they changed since the last call,
+	 * and the buffer onto the screen.
+	 *
+	 * @param pg - graphics of the screen
+	 * @param color - stroke color of the routes, with alpha
+	 * @param weight - stroke weight of the routes of the lowest class
+	 */
+	public void draw(PGraphics pg, int color, float weight) {
+		if (!rendered) {
+			buffer.beginDraw();
+			buffer.clear();
+			buffer.stroke(color);
+			buffer.noFill();
+			for (int c = 0; c < RouteLines.WEIGHT_CLASSES; c++) {
+				int count = lines.lineCount(c);
+				if (count == 0) {
+					continue;
+				}
+				float[] l = lines.getLines(c);
+				buffer.strokeWeight(weight * (1 + c));
+				buffer.beginShape(PConstants.LINES);
+				for (int i = 0; i < 4 * count; i += 4) {
+					buffer.vertex(l[i] - left, l[i + 1] - top);
+					buffer.vertex(l[i + 2] - left, l[i + 3] - top);
+				}
+				buffer.endShape();
+			}
+			buffer.endDraw();
+			rendered = true;
+		}
+		pg.image(buffer, left, top);
+	}
+}
@@ -0,0 +1,98 @@
+package module6;
+
+import java.util.Arrays;
+
+/**
+ * The screen lines of the shown routes, in weight classes, as flat arrays.
+ *
+ * Filled by whoever lays out the routes, possibly on another thread, and
+ * drawn by RouteLayer once handed over. The lines of a route are added
+ * together and markRoute() records where they are, so a single route can
+ * be drawn again, e.g. highlighted, without laying it out twice. The
+ * arrays are kept and grow as needed, so refilling the lines on every
+ * view change allocates nothing.
+ */
+public class RouteLines {
+
+	// number of stroke weights, class c is drawn (1 + c) times the base weight
+	public static final int WEIGHT_CLASSES = 4;
+
+	// line i of class c goes from (lines[c][4i], lines[c][4i+1]) to (lines[c][4i+2], lines[c][4i+3])
+	private final float[][] lines = new float[WEIGHT_CLASSES][4096];
+	private final int[] lineCount = new int[WEIGHT_CLASSES];
+
+	// the lines of route r are lines routeFirst[r] to routeEnd[r] - 1 of class routeClass[r]
+	private int[] routeFirst = new int[0];
+	private int[] routeEnd = new int[0];
+	private byte[] routeClass = new byte[0];
+
+	public void clear() {
+		Arrays.fill(lineCount, 0);
+	}
+
+	/*
+	 * @param weightClass - 0 to WEIGHT_CLASSES - 1, thicker for higher classes
+	 */
+	public void addLine(int weightClass, float x1, float y1, float x2, float y2) {
+		if (4 * lineCount[weightClass] == lines[weightClass].length) {
+			lines[weightClass] = Arrays.copyOf(lines[weightClass], lines[weightClass].length * 2);
+		}
+		float[] l = lines[weightClass];
+		int i = 4 * lineCount[weightClass]++;
+		l[i] = x1;
+		l[i + 1] = y1;
+		l[i + 2] = x2;
+		l[i + 3] = y2;
+	}
+
+	/*
+	 * Records that the lines of the class from firstLine to the last one added belong to the route.
+	 * Only routes marked since the last clear() are valid, it is up to the reader to know which.
+	 *
+	 * @param firstLine - lineCount(weightClass) before the route's lines were added
+	 */
+	public void markRoute(int route, int weightClass, int firstLine) {
+		if (route >= routeFirst.length) {
+			int capacity = Math.max(route + 1, 2 * routeFirst.length);
+			routeFirst = Arrays.copyOf(routeFirst, capacity);
+			routeEnd = Arrays.copyOf(routeEnd, capacity);
+			routeClass = Arrays.copyOf(routeClass, capacity);
+		}
+		routeFirst[route] = firstLine;
+		routeEnd[route] = lineCount[weightClass];
+		routeClass[route] = (byte) weightClass;
+	}
+
+	// weight class of a marked route
+	public int getRouteClass(int route) {
+		return routeClass[route];
+	}
+
+	// index of the first line of a marked route in its class
+	public int getRouteFirstLine(int route) {
+		return routeFirst[route];
+	}
+
+	// index one past the last line of a marked route in its class
+	public int getRouteEndLine(int route) {
+		return routeEnd[route];
+	}
+
+	// number of lines of all classes
+	public int lineCount() {
+		int count = 0;
+		for (int c = 0; c < WEIGHT_CLASSES; c++) {
+			count += lineCount[c];
+		}
+		return count;
+	}
+
+	public int lineCount(int weightClass) {
+		return lineCount[weightClass];
+	}
+
+	// the coordinates of a class, x1, y1, x2, y2 for each of its lineCount(weightClass) lines
+	public float[] getLines(int weightClass) {
+		return lines[weightClass];
+	}
+}
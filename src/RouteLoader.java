@@ -0,0 +1,123 @@
+package parsing;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Loads routes.dat in parallel.
+ *
+ * The file is cut into byte ranges that end right after a newline, and
+ * each range is mapped and parsed by its own task on a fork-join pool into
+ * a RouteTable of primitive columns, with ParseFeed.parseRouteTable(). The partial tables are concatenated
+ * in file order, so the result is the same as a single-threaded parse.
+ *
+ * routes.dat has no quoted fields spanning lines, which is what makes
+ * cutting at any newline safe.
+ */
+public class RouteLoader {
+
+	// ranges smaller than this are not worth a task of their own
+	private static final long MIN_CHUNK = 1 << 20;
+
+	private RouteLoader() {
+	}
+
+	public static RouteTable load(File file) {
+		return load(file, ForkJoinPool.commonPool());
+	}
+
+	public static RouteTable load(File file, ForkJoinPool pool) {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			long size = channel.size();
+			long chunk = Math.max(MIN_CHUNK, size / (4L * pool.getParallelism()) + 1);
+			// a mapped range must fit in an int
+			chunk = Math.min(chunk, Integer.MAX_VALUE / 2);
+
+			List<Long> cuts = new ArrayList<Long>();
+			cuts.add(0L);
+			while (true) {
+				long cut = nextLineStart(channel, cuts.get(cuts.size() - 1) + chunk);
+				if (cut >= size) {
+					break;
+				}
+				cuts.add(cut);
+			}
+			cuts.add(size);
+
+			List<ChunkTask> tasks = new ArrayList<ChunkTask>();
+			for (int i = 0; i + 1 < cuts.size(); i++) {
+				tasks.add(new ChunkTask(channel, cuts.get(i), cuts.get(i + 1)));
+			}
+			pool.invoke(new RecursiveTask<Void>() {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected Void compute() {
+					invokeAll(tasks);
+					return null;
+				}
+			});
+
+			List<RouteTable> parts = new ArrayList<RouteTable>(tasks.size());
+			for (ChunkTask task : tasks) {
+				parts.add(task.join());
+			}
+			return RouteTable.concat(parts);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	// returns the position right after the first newline at or after position
+	private static long nextLineStart(FileChannel channel, long position) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(4096);
+		long size = channel.size();
+		while (position < size) {
+			buffer.clear();
+			int n = channel.read(buffer, position);
+			if (n <= 0) {
+				break;
+			}
+			for (int i = 0; i < n; i++) {
+				if (buffer.get(i) == '\n') {
+					return position + i + 1;
+				}
+			}
+			position += n;
+		}
+		return size;
+	}
+
+	// parses one byte range of the file
+	private static class ChunkTask extends RecursiveTask<RouteTable> {
+		private static final long serialVersionUID = 1L;
+
+		private final FileChannel channel;
+		private final long start;
+		private final long end;
+
+		ChunkTask(FileChannel channel, long start, long end) {
+			this.channel = channel;
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		protected RouteTable compute() {
+			try {
+				ByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+				return ParseFeed.parseRouteTable(new CsvTokenizer(bytes));
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+}
@@ -1,58 +1,247 @@
 package module6;
 
-import java.util.List;
-
-import de.fhpotsdam.unfolding.data.ShapeFeature;
-import de.fhpotsdam.unfolding.marker.SimpleLinesMarker;
+import de.fhpotsdam.unfolding.UnfoldingMap;
+import de.fhpotsdam.unfolding.geo.Location;
+import parsing.AirportTable;
+import parsing.RouteTable;
 import processing.core.PGraphics;
-import processing.core.PVector;
 
-public class RouteMarker extends SimpleLinesMarker
+/**
+ * Marker of the routes between a pair of airports, see RoutePairs.
+ * It is a flyweight over the pair, its properties are read from the pair
+ * and the tables on demand. Routes are drawn and picked in batches by
+ * RouteLayer and SegmentGrid, a marker is only created for a single pair,
+ * e.g. the clicked one.
+ *
+ * The marker is drawn, picked and located on the same great-circle arc
+ * as the routes of the map, taken from an ArcCache of the drawing thread.
+ */
+public class RouteMarker extends FlyweightMarker
 {
-	// Records whether this marker has been clicked (most recently)
-	protected boolean clicked = false;
-	
-	public RouteMarker(ShapeFeature route) {
-		super(route.getLocations(), route.getProperties());
-		this.setHidden(true); // set the default to hidden
-		this.setStrokeWeight(3);
-		this.setStrokeColor(140);
-//		this.highlightColor = 50;
+	private static final String[] PROPERTY_KEYS = {"source", "destination", "airline", "multiplicity"};
+
+	// zoom level of the arc the location is taken from, detailed enough for any view
+	private static final int LOCATION_ZOOM = 10;
+
+	// the airports, the routes and the pair of airports they are grouped into
+	private final AirportTable airports;
+	private final RouteTable routes;
+	private final RoutePairs pairs;
+	private final ArcCache arcs;
+
+	/*
+	 * @param row - the pair of this marker, a row of the pairs and of the state
+	 * @param arcs - arcs of the routes, only used by the drawing thread
+	 */
+	public RouteMarker(AirportTable airports, RouteTable routes, RoutePairs pairs,
+			MarkerState state, int row, ArcCache arcs) {
+		super(state, row);
+		this.airports = airports;
+		this.routes = routes;
+		this.pairs = pairs;
+		this.arcs = arcs;
 	}
+
 	public int getStrokeWeight() {
-		return this.strokeWeight;
-	}	
-	
+		return state.getStrokeWeight(row);
+	}
+
+	// the two OpenFlights ids joined by a dash
+	@Override
+	protected String getTableId() {
+		return getSourceID() + "-" + getDestID();
+	}
+
+	// the location of a route is the middle of its arc, halfway along it as the map shows it
+	@Override
+	protected float getTableLat() {
+		return middle()[0];
+	}
+
+	@Override
+	protected float getTableLon() {
+		return middle()[1];
+	}
+
+	// the whole location is taken from one walk along the arc
+	@Override
+	public Location getLocation() {
+		if (hasOwnLocation()) {
+			return super.getLocation();
+		}
+		float[] middle = middle();
+		return new Location(middle[0], middle[1]);
+	}
+
+	// Getter method for the AirportTable row of the source airport, the one routes leave from;
+	// for routes both ways it is the one with the smaller row
+	public int getSourceRow() {
+		return isHighToLow() ? pairs.getHigh(row) : pairs.getLow(row);
+	}
+
+	// Getter method for the AirportTable row of the destination airport
+	public int getDestRow() {
+		return isHighToLow() ? pairs.getLow(row) : pairs.getHigh(row);
+	}
+
 	// Getter method for the OpenFlights ID of the source airport for the route
 	public int getSourceID() {
-		return Integer.parseInt((String)this.getProperty("source"));
+		return airports.getId(getSourceRow());
 	}
-	
+
 	// Getter method for the OpenFlights ID of the destination airport for the route
 	public int getDestID() {
-		return Integer.parseInt((String)this.getProperty("destination"));
-	}
-	
-	// Getter method for clicked field
-	public boolean getClicked() {
-		return clicked;
-	}
-	
-	// Setter method for clicked field
-	public void setClicked(boolean state) {
-		clicked = state;
-	}
-	
-	
-	public void draw(PGraphics pg, float x, float y) {
-		if (clicked) {
-			System.out.println("I'm clicked -  by routemarker");
-			this.setStrokeColor(250);
-		}
-		
-	}
-	
-	public boolean checkForClick(int mouseX, int mouseY, List<PVector> vectors) {
-		return this.isInside(mouseX, mouseY, vectors);
+		return airports.getId(getDestRow());
+	}
+
+	// true if the routes only go from the airport with the larger row to the other one
+	private boolean isHighToLow() {
+		return pairs.getDirections(row) == RoutePairs.HIGH_TO_LOW;
+	}
+
+	// number of routes, one per airline and direction, between the two airports
+	public int getMultiplicity() {
+		return pairs.getMultiplicity(row);
+	}
+
+	// true if routes go both from the source to the destination and back
+	public boolean isBothWays() {
+		return pairs.getDirections(row) == (RoutePairs.LOW_TO_HIGH | RoutePairs.HIGH_TO_LOW);
+	}
+
+	// codes of the distinct airlines flying between the two airports
+	public String[] getAirlines() {
+		String[] codes = new String[pairs.getAirlineCount(row)];
+		for (int i = 0; i < codes.length; i++) {
+			codes[i] = routes.getAirlines().get(pairs.getAirlineCode(row, i));
+		}
+		return codes;
+	}
+
+	// properties are read from the pair rather than entries of a HashMap
+	@Override
+	protected Object getTableProperty(String key) {
+		switch (key) {
+		case "source":
+			return Integer.toString(getSourceID());
+		case "destination":
+			return Integer.toString(getDestID());
+		case "airline":
+			return String.join(", ", getAirlines());
+		case "multiplicity":
+			return getMultiplicity();
+		default:
+			return null;
+		}
+	}
+
+	@Override
+	protected String[] getTablePropertyKeys() {
+		return PROPERTY_KEYS;
+	}
+
+	// true if the point is on the arc the map shows, within half the stroke weight
+	@Override
+	public boolean isInside(UnfoldingMap map, float checkX, float checkY) {
+		MapProjection projection = new MapProjection();
+		projection.update(map);
+		float[] arc = arc(map.getZoomLevel());
+		float tolerance = Math.max(2, getStrokeWeight() / 2f);
+		float shift = wrapShift(arc);
+		return isNear(projection, arc, 0, checkX, checkY, tolerance)
+				|| shift != 0 && isNear(projection, arc, shift, checkX, checkY, tolerance);
+	}
+
+	// draws the arc where the map shows it, like the route layer does
+	@Override
+	public void draw(UnfoldingMap map) {
+		if (isHidden()) {
+			return;
+		}
+		PGraphics pg = map.mapDisplay.getOuterPG();
+		MapProjection projection = new MapProjection();
+		projection.updateObject(map);
+		float[] arc = arc(map.getZoomLevel());
+		pg.pushStyle();
+		state.applyStyle(pg, row, isHighlighted());
+		drawArc(pg, projection, arc, 0);
+		float shift = wrapShift(arc);
+		if (shift != 0) {
+			drawArc(pg, projection, arc, shift);
+		}
+		pg.popStyle();
+	}
+
+	// the great-circle arc of the pair simplified for a zoom level, see ArcCache
+	private float[] arc(int zoomLevel) {
+		int low = pairs.getLow(row);
+		int high = pairs.getHigh(row);
+		return arcs.get(row, zoomLevel, airports.getLat(low), airports.getLon(low),
+				airports.getLat(high), airports.getLon(high));
+	}
+
+	// world widths an arc across the antimeridian is drawn again shifted by, 0 for other arcs
+	private static float wrapShift(float[] arc) {
+		float end = arc[arc.length - 2];
+		return end < 0 ? 1 : end >= 1 ? -1 : 0;
+	}
+
+	// latitude and longitude of the point halfway along the arc, the longitude inside the world
+	private float[] middle() {
+		float[] arc = arc(LOCATION_ZOOM);
+		float length = 0;
+		for (int i = 2; i < arc.length; i += 2) {
+			length += (float) Math.hypot(arc[i] - arc[i - 2], arc[i + 1] - arc[i - 1]);
+		}
+		float x = arc[arc.length - 2];
+		float y = arc[arc.length - 1];
+		float rest = length / 2;
+		for (int i = 2; i < arc.length; i += 2) {
+			float segment = (float) Math.hypot(arc[i] - arc[i - 2], arc[i + 1] - arc[i - 1]);
+			if (segment >= rest) {
+				float t = segment == 0 ? 0 : rest / segment;
+				x = arc[i - 2] + t * (arc[i] - arc[i - 2]);
+				y = arc[i - 1] + t * (arc[i + 1] - arc[i - 1]);
+				break;
+			}
+			rest -= segment;
+		}
+		return new float[] {MapProjection.latitude(y), MapProjection.longitude(x - (float) Math.floor(x))};
+	}
+
+	// true if a point is within tolerance of a segment of the arc moved by shift world widths
+	private static boolean isNear(MapProjection projection, float[] arc, float shift,
+			float checkX, float checkY, float tolerance) {
+		float ax = projection.screenX(arc[0] + shift);
+		float ay = projection.screenY(arc[1]);
+		for (int i = 2; i < arc.length; i += 2) {
+			float bx = projection.screenX(arc[i] + shift);
+			float by = projection.screenY(arc[i + 1]);
+			float dx = bx - ax;
+			float dy = by - ay;
+			float lengthSq = dx * dx + dy * dy;
+			float t = lengthSq == 0 ? 0 : ((checkX - ax) * dx + (checkY - ay) * dy) / lengthSq;
+			t = Math.max(0, Math.min(1, t));
+			float ex = ax + t * dx - checkX;
+			float ey = ay + t * dy - checkY;
+			if (ex * ex + ey * ey <= tolerance * tolerance) {
+				return true;
+			}
+			ax = bx;
+			ay = by;
+		}
+		return false;
+	}
+
+	private static void drawArc(PGraphics pg, MapProjection projection, float[] arc, float shift) {
+		float x = projection.screenX(arc[0] + shift);
+		float y = projection.screenY(arc[1]);
+		for (int i = 2; i < arc.length; i += 2) {
+			float nextX = projection.screenX(arc[i] + shift);
+			float nextY = projection.screenY(arc[i + 1]);
+			pg.line(x, y, nextX, nextY);
+			x = nextX;
+			y = nextY;
+		}
 	}
 }
@@ -0,0 +1,235 @@
+package module6;
+
+import java.util.Arrays;
+
+import parsing.RouteTable;
+
+/**
+ * The routes of the network collapsed into one edge per pair of airports.
+ *
+ * routes.dat has a row per airline and direction, so a busy pair of
+ * airports has dozens of rows that all draw the same line. A pair keeps
+ * its two airports (low is the smaller row), the number of routes between
+ * them, which directions are flown and the distinct airlines, so culling,
+ * drawing and picking handle each line once while the details of every
+ * route stay available.
+ *
+ * Pairs are sorted by low and then high airport, and getGraph() stores
+ * pair p as edge p from low to high, so the mask over pairs works with
+ * RouteGraph.selectEdges() like a mask over routes.
+ */
+public class RoutePairs {
+
+	// direction flags of a pair
+	public static final int LOW_TO_HIGH = 1;
+	public static final int HIGH_TO_LOW = 2;
+
+	private final int pairCount;
+	private final int[] low;
+	private final int[] high;
+	private final byte[] directions;
+	private final RouteGraph graph;
+
+	// routes of pair p are routes[routeStart[p]] to routes[routeStart[p+1]-1], as route table rows
+	private final int[] routeStart;
+	private final int[] routes;
+
+	// distinct airline codes of pair p, in the same layout
+	private final int[] airlineStart;
+	private final int[] airlines;
+
+	// pairs at airport a are incident[incidentStart[a]] to incident[incidentStart[a+1]-1]
+	private final int[] incidentStart;
+	private final int[] incident;
+
+	// pair of every resolved route, in the order given to the constructor
+	private final int[] pairOf;
+
+	/*
+	 * Route i goes from sourceRows[i] to destRows[i] and is row tableRows[i]
+	 * of the route table.
+	 *
+	 * @param airportCount - number of rows in the airport table
+	 * @param table - routes whose airline codes are collected
+	 * @param count - number of routes in the arrays
+	 */
+	public RoutePairs(int airportCount, RouteTable table, int[] tableRows, int[] sourceRows, int[] destRows, int count) {
+		int[] lowOf = new int[count];
+		int[] highOf = new int[count];
+		for (int i = 0; i < count; i++) {
+			lowOf[i] = Math.min(sourceRows[i], destRows[i]);
+			highOf[i] = Math.max(sourceRows[i], destRows[i]);
+		}
+
+		// order the routes by pair with two stable counting sorts, by high row then by low row
+		int[] byHigh = countingSort(identity(count), highOf, airportCount);
+		int[] order = countingSort(byHigh, lowOf, airportCount);
+
+		int pairs = 0;
+		for (int k = 0; k < count; k++) {
+			if (k == 0 || !samePair(order[k], order[k - 1], lowOf, highOf)) {
+				pairs++;
+			}
+		}
+		pairCount = pairs;
+		low = new int[pairs];
+		high = new int[pairs];
+		directions = new byte[pairs];
+		routeStart = new int[pairs + 1];
+		routes = new int[count];
+		pairOf = new int[count];
+		airlineStart = new int[pairs + 1];
+		int[] airlineBuffer = new int[count];
+
+		int p = -1;
+		for (int k = 0; k < count; k++) {
+			int i = order[k];
+			if (k == 0 || !samePair(i, order[k - 1], lowOf, highOf)) {
+				p++;
+				low[p] = lowOf[i];
+				high[p] = highOf[i];
+				routeStart[p] = k;
+			}
+			routes[k] = tableRows[i];
+			pairOf[i] = p;
+			directions[p] |= sourceRows[i] <= destRows[i] ? LOW_TO_HIGH : HIGH_TO_LOW;
+		}
+		routeStart[pairs] = count;
+
+		// distinct airlines, sorted by code within every pair;
+		// routes without an airline count towards the multiplicity but list none
+		int filled = 0;
+		for (p = 0; p < pairs; p++) {
+			airlineStart[p] = filled;
+			int from = filled;
+			for (int k = routeStart[p]; k < routeStart[p + 1]; k++) {
+				int code = table.getAirlineCode(routes[k]);
+				if (code != RouteTable.NO_CODE) {
+					airlineBuffer[filled++] = code;
+				}
+			}
+			Arrays.sort(airlineBuffer, from, filled);
+			int unique = from;
+			for (int k = from; k < filled; k++) {
+				if (k == from || airlineBuffer[k] != airlineBuffer[k - 1]) {
+					airlineBuffer[unique++] = airlineBuffer[k];
+				}
+			}
+			filled = unique;
+		}
+		airlineStart[pairs] = filled;
+		airlines = Arrays.copyOf(airlineBuffer, filled);
+
+		// pairs are sorted by low row, so this graph keeps pair p as edge p
+		graph = new RouteGraph(airportCount, low, high, pairs);
+
+		incidentStart = new int[airportCount + 1];
+		for (p = 0; p < pairs; p++) {
+			incidentStart[low[p] + 1]++;
+			if (high[p] != low[p]) {
+				incidentStart[high[p] + 1]++;
+			}
+		}
+		for (int a = 0; a < airportCount; a++) {
+			incidentStart[a + 1] += incidentStart[a];
+		}
+		incident = new int[incidentStart[airportCount]];
+		int[] next = Arrays.copyOf(incidentStart, airportCount);
+		for (p = 0; p < pairs; p++) {
+			incident[next[low[p]]++] = p;
+			if (high[p] != low[p]) {
+				incident[next[high[p]]++] = p;
+			}
+		}
+	}
+
+	private static int[] identity(int count) {
+		int[] values = new int[count];
+		for (int i = 0; i < count; i++) {
+			values[i] = i;
+		}
+		return values;
+	}
+
+	// returns items ordered by key[item], keeping the order of items with the same key
+	private static int[] countingSort(int[] items, int[] key, int keyCount) {
+		int[] start = new int[keyCount + 1];
+		for (int item : items) {
+			start[key[item] + 1]++;
+		}
+		for (int k = 0; k < keyCount; k++) {
+			start[k + 1] += start[k];
+		}
+		int[] sorted = new int[items.length];
+		for (int item : items) {
+			sorted[start[key[item]]++] = item;
+		}
+		return sorted;
+	}
+
+	private static boolean samePair(int i, int j, int[] lowOf, int[] highOf) {
+		return lowOf[i] == lowOf[j] && highOf[i] == highOf[j];
+	}
+
+	public int pairCount() {
+		return pairCount;
+	}
+
+	// the pairs as a graph whose edge p goes from low(p) to high(p)
+	public RouteGraph getGraph() {
+		return graph;
+	}
+
+	// row of the airport of the pair with the smaller row
+	public int getLow(int pair) {
+		return low[pair];
+	}
+
+	// row of the airport of the pair with the larger row
+	public int getHigh(int pair) {
+		return high[pair];
+	}
+
+	// number of routes between the two airports, in both directions
+	public int getMultiplicity(int pair) {
+		return routeStart[pair + 1] - routeStart[pair];
+	}
+
+	// LOW_TO_HIGH, HIGH_TO_LOW or both
+	public int getDirections(int pair) {
+		return directions[pair];
+	}
+
+	// route table row of the i-th route of the pair
+	public int getRoute(int pair, int i) {
+		return routes[routeStart[pair] + i];
+	}
+
+	public int getAirlineCount(int pair) {
+		return airlineStart[pair + 1] - airlineStart[pair];
+	}
+
+	// code of the i-th distinct airline of the pair, see RouteTable.getAirlines()
+	public int getAirlineCode(int pair, int i) {
+		return airlines[airlineStart[pair] + i];
+	}
+
+	// pair of the i-th route given to the constructor
+	public int pairOf(int route) {
+		return pairOf[route];
+	}
+
+	// index of the first pair at the airport, see incidentPair()
+	public int firstIncident(int airportRow) {
+		return incidentStart[airportRow];
+	}
+
+	// index one past the last pair at the airport
+	public int endIncident(int airportRow) {
+		return incidentStart[airportRow + 1];
+	}
+
+	public int incidentPair(int i) {
+		return incident[i];
+	}
+}
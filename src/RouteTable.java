@@ -0,0 +1,160 @@
+package parsing;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Columnar store for the routes of routes.dat.
+ *
+ * Like AirportTable, every route is a row and every attribute a primitive
+ * column. Airline and equipment have few distinct values, so they are
+ * stored as codes of a StringDictionary. Endpoints are kept as OpenFlights
+ * airport ids; they are resolved to airport rows by whoever joins the two
+ * tables.
+ */
+public class RouteTable {
+
+	// airline or equipment code of a route whose field is missing
+	public static final int NO_CODE = -1;
+
+	private int size;
+	private int[] airline;
+	private int[] sourceId;
+	private int[] destId;
+	private byte[] stops;
+	private int[] equipment;
+	private final StringDictionary airlines;
+	private final StringDictionary equipments;
+
+	public RouteTable() {
+		this(1024);
+	}
+
+	public RouteTable(int capacity) {
+		capacity = Math.max(capacity, 16);
+		airline = new int[capacity];
+		sourceId = new int[capacity];
+		destId = new int[capacity];
+		stops = new byte[capacity];
+		equipment = new int[capacity];
+		airlines = new StringDictionary();
+		equipments = new StringDictionary();
+	}
+
+	// wraps columns that were read in bulk, e.g. from a snapshot
+	RouteTable(int size, int[] airline, int[] sourceId, int[] destId, byte[] stops, int[] equipment,
+			StringDictionary airlines, StringDictionary equipments) {
+		this.size = size;
+		this.airline = airline;
+		this.sourceId = sourceId;
+		this.destId = destId;
+		this.stops = stops;
+		this.equipment = equipment;
+		this.airlines = airlines;
+		this.equipments = equipments;
+	}
+
+	// appends a route and returns its row, airline and aircraft may be null
+	public int addRoute(String airlineCode, int source, int dest, int stopCount, String aircraft) {
+		return addCodedRoute(airlineCode == null ? NO_CODE : airlines.add(airlineCode), source, dest, stopCount,
+				aircraft == null ? NO_CODE : equipments.add(aircraft));
+	}
+
+	// appends a route whose airline and equipment are codes of this table's dictionaries
+	private int addCodedRoute(int airlineCode, int source, int dest, int stopCount, int aircraftCode) {
+		if (size == sourceId.length) {
+			grow(size * 2);
+		}
+		int row = size++;
+		airline[row] = airlineCode;
+		sourceId[row] = source;
+		destId[row] = dest;
+		stops[row] = (byte) Math.min(stopCount, Byte.MAX_VALUE);
+		equipment[row] = aircraftCode;
+		return row;
+	}
+
+	private void grow(int capacity) {
+		airline = Arrays.copyOf(airline, capacity);
+		sourceId = Arrays.copyOf(sourceId, capacity);
+		destId = Arrays.copyOf(destId, capacity);
+		stops = Arrays.copyOf(stops, capacity);
+		equipment = Arrays.copyOf(equipment, capacity);
+	}
+
+	/*
+	 * Concatenates tables that were filled separately, e.g. one per chunk of a file.
+	 * The codes of every part are translated to the dictionaries of the result.
+	 */
+	public static RouteTable concat(List<RouteTable> parts) {
+		int total = 0;
+		for (RouteTable part : parts) {
+			total += part.size;
+		}
+		RouteTable table = new RouteTable(total);
+		for (RouteTable part : parts) {
+			int[] airlineCodes = table.airlines.merge(part.airlines);
+			int[] equipmentCodes = table.equipments.merge(part.equipments);
+			int offset = table.size;
+			System.arraycopy(part.sourceId, 0, table.sourceId, offset, part.size);
+			System.arraycopy(part.destId, 0, table.destId, offset, part.size);
+			System.arraycopy(part.stops, 0, table.stops, offset, part.size);
+			for (int row = 0; row < part.size; row++) {
+				table.airline[offset + row] = remap(airlineCodes, part.airline[row]);
+				table.equipment[offset + row] = remap(equipmentCodes, part.equipment[row]);
+			}
+			table.size += part.size;
+		}
+		return table;
+	}
+
+	private static int remap(int[] codes, int code) {
+		return code == NO_CODE ? NO_CODE : codes[code];
+	}
+
+	public int size() {
+		return size;
+	}
+
+	// IATA or ICAO code of the airline, or null if it is missing
+	public String getAirline(int row) {
+		return airline[row] == NO_CODE ? null : airlines.get(airline[row]);
+	}
+
+	// dictionary code of the airline, see getAirlines(), or NO_CODE
+	public int getAirlineCode(int row) {
+		return airline[row];
+	}
+
+	// OpenFlights id of the source airport
+	public int getSourceId(int row) {
+		return sourceId[row];
+	}
+
+	// OpenFlights id of the destination airport
+	public int getDestId(int row) {
+		return destId[row];
+	}
+
+	public int getStops(int row) {
+		return stops[row];
+	}
+
+	// space separated aircraft codes, or null if the route lists none
+	public String getEquipment(int row) {
+		return equipment[row] == NO_CODE ? null : equipments.get(equipment[row]);
+	}
+
+	// dictionary code of the equipment, see getEquipments(), or NO_CODE
+	public int getEquipmentCode(int row) {
+		return equipment[row];
+	}
+
+	public StringDictionary getAirlines() {
+		return airlines;
+	}
+
+	public StringDictionary getEquipments() {
+		return equipments;
+	}
+}
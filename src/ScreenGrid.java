@@ -0,0 +1,146 @@
+package module6;
+
+import java.util.Arrays;
+
+/**
+ * A uniform grid of screen cells over a set of points, for picking the
+ * point under the mouse.
+ *
+ * Points are added with add() and indexed by build(), which packs them
+ * like AirportGrid: the points of cell c are items[cellStart[c]] to
+ * items[cellStart[c+1]-1]. With cells at least as large as the pick
+ * radius, nearest() only looks at the 3x3 cells around the mouse, so a
+ * lookup costs about the number of points near it. The arrays are kept
+ * between builds, so rebuilding on a view change allocates nothing once
+ * they are large enough.
+ */
+public class ScreenGrid {
+
+	private final float cellSize;
+	private float left;
+	private float top;
+	private int cols;
+	private int rows;
+	private int[] cellStart = new int[2];
+
+	// points in the order they were added
+	private int count;
+	private int[] pointId = new int[256];
+	private float[] pointX = new float[256];
+	private float[] pointY = new float[256];
+	private int[] pointCell = new int[256];
+
+	// points packed by cell
+	private int[] items = new int[256];
+
+	/*
+	 * @param cellSize - width and height of a cell in pixels, at least the pick radius
+	 */
+	public ScreenGrid(float cellSize) {
+		this.cellSize = cellSize;
+	}
+
+	/*
+	 * Removes all points and sets the area of the grid.
+	 * Points outside of it are ignored by add().
+	 */
+	public void clear(float left, float top, float width, float height) {
+		this.left = left;
+		this.top = top;
+		cols = Math.max(1, (int) Math.ceil(width / cellSize));
+		rows = Math.max(1, (int) Math.ceil(height / cellSize));
+		if (cellStart.length < cols * rows + 2) {
+			cellStart = new int[cols * rows + 2];
+		}
+		count = 0;
+	}
+
+	public void add(int id, float x, float y) {
+		int col = (int) Math.floor((x - left) / cellSize);
+		int row = (int) Math.floor((y - top) / cellSize);
+		if (col < 0 || col >= cols || row < 0 || row >= rows) {
+			return;
+		}
+		if (count == pointId.length) {
+			int capacity = count * 2;
+			pointId = Arrays.copyOf(pointId, capacity);
+			pointX = Arrays.copyOf(pointX, capacity);
+			pointY = Arrays.copyOf(pointY, capacity);
+			pointCell = Arrays.copyOf(pointCell, capacity);
+		}
+		pointId[count] = id;
+		pointX[count] = x;
+		pointY[count] = y;
+		pointCell[count] = row * cols + col;
+		count++;
+	}
+
+	/*
+	 * Refills the grid with the points of a set of rows, the way it is
+	 * rebuilt on every view change: clear(), add() and build() in one.
+	 *
+	 * @param ids - rows to add, each with its row as id
+	 * @param positions - screen positions of the rows
+	 */
+	public void index(float left, float top, float width, float height, BitMask ids, ScreenPositions positions) {
+		clear(left, top, width, height);
+		for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+			add(id, positions.getX(id), positions.getY(id));
+		}
+		build();
+	}
+
+	// packs the added points by cell with a counting sort
+	public void build() {
+		int cells = cols * rows;
+		// counts go two slots up, so that after the prefix sum
+		// cellStart[c+1] can serve as the fill cursor of cell c
+		Arrays.fill(cellStart, 0, cells + 2, 0);
+		for (int i = 0; i < count; i++) {
+			cellStart[pointCell[i] + 2]++;
+		}
+		for (int c = 2; c < cells + 2; c++) {
+			cellStart[c] += cellStart[c - 1];
+		}
+		if (items.length < count) {
+			items = new int[pointId.length];
+		}
+		for (int i = 0; i < count; i++) {
+			items[cellStart[pointCell[i] + 1]++] = i;
+		}
+	}
+
+	public int size() {
+		return count;
+	}
+
+	/*
+	 * Returns the id of the point nearest to (x, y) within radius,
+	 * or -1 if there is none. Of points at the same distance the one
+	 * added first wins.
+	 */
+	public int nearest(float x, float y, float radius) {
+		int col = (int) Math.floor((x - left) / cellSize);
+		int row = (int) Math.floor((y - top) / cellSize);
+		int reach = Math.max(1, (int) Math.ceil(radius / cellSize));
+
+		int best = -1;
+		float bestDistance = radius * radius;
+		for (int r = Math.max(0, row - reach); r <= Math.min(rows - 1, row + reach); r++) {
+			for (int c = Math.max(0, col - reach); c <= Math.min(cols - 1, col + reach); c++) {
+				int cell = r * cols + c;
+				for (int i = cellStart[cell]; i < cellStart[cell + 1]; i++) {
+					int p = items[i];
+					float dx = pointX[p] - x;
+					float dy = pointY[p] - y;
+					float distance = dx * dx + dy * dy;
+					if (distance < bestDistance || (distance == bestDistance && best >= 0 && p < best)) {
+						best = p;
+						bestDistance = distance;
+					}
+				}
+			}
+		}
+		return best < 0 ? -1 : pointId[best];
+	}
+}
@@ -0,0 +1,81 @@
+package module6;
+
+import java.util.stream.IntStream;
+
+/**
+ * Screen positions of a set of locations, projected together once per view.
+ *
+ * The locations are given as Mercator coordinates, computed once when the
+ * data is loaded and shared read-only. update() projects all of them to
+ * the screen with the transform of a view into two float arrays, in a
+ * loop without calls or allocations; large sets are split into chunks
+ * that are projected on all cores. Culling, picking and label placement
+ * then read the arrays by row instead of asking the map for a
+ * ScreenPosition per marker.
+ *
+ * The arrays belong to one thread at a time, like the Visibility buffer
+ * of VisibilityWorker that holds them: the worker fills them and the
+ * drawing thread reads them once the buffer is handed over.
+ */
+public class ScreenPositions {
+
+	// sets of this many locations and more are projected in parallel, in chunks of CHUNK
+	private static final int PARALLEL_SIZE = 1 << 16;
+	private static final int CHUNK = 1 << 14;
+
+	private final float[] mercatorX;
+	private final float[] mercatorY;
+	private final float[] screenX;
+	private final float[] screenY;
+
+	/*
+	 * @param mercatorX, mercatorY - Mercator coordinates of the locations by row, not changed afterwards
+	 */
+	public ScreenPositions(float[] mercatorX, float[] mercatorY) {
+		this.mercatorX = mercatorX;
+		this.mercatorY = mercatorY;
+		this.screenX = new float[mercatorX.length];
+		this.screenY = new float[mercatorY.length];
+	}
+
+	public int size() {
+		return screenX.length;
+	}
+
+	// projects every location with the transform of a view
+	public void update(MapProjection projection) {
+		int size = size();
+		if (size < PARALLEL_SIZE) {
+			projection.project(mercatorX, mercatorY, screenX, screenY, 0, size);
+			return;
+		}
+		IntStream.range(0, (size + CHUNK - 1) / CHUNK).parallel().forEach(chunk ->
+				projection.project(mercatorX, mercatorY, screenX, screenY,
+						chunk * CHUNK, Math.min(size, chunk * CHUNK + CHUNK)));
+	}
+
+	public float getX(int row) {
+		return screenX[row];
+	}
+
+	public float getY(int row) {
+		return screenY[row];
+	}
+
+	// true if the row's position is inside the rectangle
+	public boolean isInside(int row, float left, float top, float right, float bottom) {
+		float x = screenX[row];
+		float y = screenY[row];
+		return x >= left && x < right && y >= top && y < bottom;
+	}
+
+	// the x positions by row, for loops over many rows
+	public float[] getScreenX() {
+		return screenX;
+	}
+
+	// the y positions by row, for loops over many rows
+	public float[] getScreenY() {
+		return screenY;
+	}
+}
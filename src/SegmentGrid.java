@@ -0,0 +1,225 @@
+package module6;
+
+import java.util.Arrays;
+
+/**
+ * A uniform grid of screen cells over line segments, for picking the
+ * segment under the mouse.
+ *
+ * Every segment is clipped to the area of the grid and entered in the
+ * cells it passes through, found by walking the segment column by column,
+ * so a long diagonal costs one entry per cell it crosses rather than one
+ * per cell of its bounding box. nearest() measures the point-to-segment
+ * distance of the segments in the cells around the mouse only. Like
+ * ScreenGrid, the arrays are kept between builds.
+ */
+public class SegmentGrid {
+
+	private final float cellSize;
+	private float left;
+	private float top;
+	private int cols;
+	private int rows;
+	private int[] cellStart = new int[2];
+
+	// segments in the order they were added
+	private int count;
+	private int[] segmentId = new int[256];
+	private float[] x1 = new float[256];
+	private float[] y1 = new float[256];
+	private float[] x2 = new float[256];
+	private float[] y2 = new float[256];
+
+	// (cell, segment) entries in the order they were found, then packed by cell
+	private int entries;
+	private int[] entryCell = new int[1024];
+	private int[] entrySegment = new int[1024];
+	private int[] items = new int[1024];
+
+	// the four clipping tests of add(), direction then distance
+	private final float[] clip = new float[8];
+
+	/*
+	 * @param cellSize - width and height of a cell in pixels
+	 */
+	public SegmentGrid(float cellSize) {
+		this.cellSize = cellSize;
+	}
+
+	/*
+	 * Removes all segments and sets the area of the grid.
+	 * The parts of segments more than a cell outside of it are ignored by add().
+	 */
+	public void clear(float left, float top, float width, float height) {
+		this.left = left;
+		this.top = top;
+		cols = Math.max(1, (int) Math.ceil(width / cellSize));
+		rows = Math.max(1, (int) Math.ceil(height / cellSize));
+		if (cellStart.length < cols * rows + 2) {
+			cellStart = new int[cols * rows + 2];
+		}
+		count = 0;
+		entries = 0;
+	}
+
+	// adds the segment from (ax, ay) to (bx, by) with an id, e.g. the row of its route
+	public void add(int id, float ax, float ay, float bx, float by) {
+		// clip with Liang-Barsky, in cell units, to the grid and a margin of a cell
+		// that goes to the border cells, so segments just outside can still be picked
+		float sx = (ax - left) / cellSize;
+		float sy = (ay - top) / cellSize;
+		float dx = (bx - ax) / cellSize;
+		float dy = (by - ay) / cellSize;
+		float t0 = 0;
+		float t1 = 1;
+		float[] p = clip;
+		p[0] = -dx;
+		p[1] = dx;
+		p[2] = -dy;
+		p[3] = dy;
+		p[4] = sx + 1;
+		p[5] = cols + 1 - sx;
+		p[6] = sy + 1;
+		p[7] = rows + 1 - sy;
+		for (int k = 0; k < 4; k++) {
+			if (p[k] == 0) {
+				if (p[k + 4] < 0) {
+					return;
+				}
+			} else {
+				float t = p[k + 4] / p[k];
+				if (p[k] < 0) {
+					t0 = Math.max(t0, t);
+				} else {
+					t1 = Math.min(t1, t);
+				}
+			}
+		}
+		if (t0 > t1) {
+			return;
+		}
+
+		if (count == segmentId.length) {
+			int capacity = count * 2;
+			segmentId = Arrays.copyOf(segmentId, capacity);
+			x1 = Arrays.copyOf(x1, capacity);
+			y1 = Arrays.copyOf(y1, capacity);
+			x2 = Arrays.copyOf(x2, capacity);
+			y2 = Arrays.copyOf(y2, capacity);
+		}
+		int segment = count++;
+		segmentId[segment] = id;
+		x1[segment] = ax;
+		y1[segment] = ay;
+		x2[segment] = bx;
+		y2[segment] = by;
+
+		walk(segment, sx + t0 * dx, sy + t0 * dy, sx + t1 * dx, sy + t1 * dy);
+	}
+
+	// enters the segment in every cell from (cx0, cy0) to (cx1, cy1), in cell units,
+	// one column at a time: the rows of a column are the ones between the
+	// heights of the segment where it enters and leaves the column
+	private void walk(int segment, float cx0, float cy0, float cx1, float cy1) {
+		if (cx0 > cx1) {
+			float x = cx0;
+			cx0 = cx1;
+			cx1 = x;
+			float y = cy0;
+			cy0 = cy1;
+			cy1 = y;
+		}
+		int firstCol = clampCol((int) Math.floor(cx0));
+		int lastCol = clampCol((int) Math.floor(cx1));
+		float slope = cx1 > cx0 ? (cy1 - cy0) / (cx1 - cx0) : 0;
+		for (int col = firstCol; col <= lastCol; col++) {
+			float enterY = col == firstCol ? cy0 : cy0 + (col - cx0) * slope;
+			float leaveY = col == lastCol ? cy1 : cy0 + (col + 1 - cx0) * slope;
+			int fromRow = clampRow((int) Math.floor(Math.min(enterY, leaveY)));
+			int toRow = clampRow((int) Math.floor(Math.max(enterY, leaveY)));
+			for (int row = fromRow; row <= toRow; row++) {
+				addEntry(row * cols + col, segment);
+			}
+		}
+	}
+
+	private int clampCol(int col) {
+		return Math.max(0, Math.min(cols - 1, col));
+	}
+
+	private int clampRow(int row) {
+		return Math.max(0, Math.min(rows - 1, row));
+	}
+
+	private void addEntry(int cell, int segment) {
+		if (entries == entryCell.length) {
+			entryCell = Arrays.copyOf(entryCell, entries * 2);
+			entrySegment = Arrays.copyOf(entrySegment, entries * 2);
+		}
+		entryCell[entries] = cell;
+		entrySegment[entries] = segment;
+		entries++;
+	}
+
+	// packs the entries by cell with a counting sort, like ScreenGrid.build()
+	public void build() {
+		int cells = cols * rows;
+		Arrays.fill(cellStart, 0, cells + 2, 0);
+		for (int i = 0; i < entries; i++) {
+			cellStart[entryCell[i] + 2]++;
+		}
+		for (int c = 2; c < cells + 2; c++) {
+			cellStart[c] += cellStart[c - 1];
+		}
+		if (items.length < entries) {
+			items = new int[entryCell.length];
+		}
+		for (int i = 0; i < entries; i++) {
+			items[cellStart[entryCell[i] + 1]++] = entrySegment[i];
+		}
+	}
+
+	public int size() {
+		return count;
+	}
+
+	/*
+	 * Returns the id of the segment nearest to (x, y) within tolerance,
+	 * or -1 if there is none. Of segments at the same distance the one
+	 * added first wins.
+	 */
+	public int nearest(float x, float y, float tolerance) {
+		int col = (int) Math.floor((x - left) / cellSize);
+		int row = (int) Math.floor((y - top) / cellSize);
+		int reach = Math.max(1, (int) Math.ceil(tolerance / cellSize));
+
+		int best = -1;
+		float bestDistance = tolerance * tolerance;
+		for (int r = Math.max(0, row - reach); r <= Math.min(rows - 1, row + reach); r++) {
+			for (int c = Math.max(0, col - reach); c <= Math.min(cols - 1, col + reach); c++) {
+				int cell = r * cols + c;
+				for (int i = cellStart[cell]; i < cellStart[cell + 1]; i++) {
+					int s = items[i];
+					float distance = distanceSquared(s, x, y);
+					if (distance < bestDistance || (distance == bestDistance && best >= 0 && s < best)) {
+						best = s;
+						bestDistance = distance;
+					}
+				}
+			}
+		}
+		return best < 0 ? -1 : segmentId[best];
+	}
+
+	// squared distance from (x, y) to the closest point of the segment
+	private float distanceSquared(int s, float x, float y) {
+		float dx = x2[s] - x1[s];
+		float dy = y2[s] - y1[s];
+		float length = dx * dx + dy * dy;
+		float t = length > 0 ? ((x - x1[s]) * dx + (y - y1[s]) * dy) / length : 0;
+		t = Math.max(0, Math.min(1, t));
+		float ex = x1[s] + t * dx - x;
+		float ey = y1[s] + t * dy - y;
+		return ex * ex + ey * ey;
+	}
+}
@@ -0,0 +1,350 @@
+package parsing;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * A binary snapshot of the parsed airport and route tables.
+ *
+ * After the text files have been parsed once, write() stores the tables
+ * as fixed-width little-endian columns followed by a heap holding the
+ * UTF-8 bytes of all strings. read() checks the header, reads the rest of
+ * the file into one buffer and copies the columns out of it in bulk, so
+ * later launches skip the text parsing entirely. Nothing of the file stays
+ * mapped or open, so write() can replace it on any platform.
+ *
+ * The header keeps a CRC32 of the source files. A snapshot written for
+ * other source files, or by another version of the format, is ignored.
+ *
+ * Layout, all values little-endian:
+ *   int magic, int version, long checksum,
+ *   int airports, int routes, int airlines, int equipments
+ *   airports: int[] id, float[] lat, float[] lon, short[] altitude
+ *   routes: int[] sourceId, int[] destId, int[] airline, int[] equipment, byte[] stops
+ *   string columns (airport name, city, country, code) and the route
+ *   dictionaries (airlines, equipments): int[] start and int[] length
+ *   into the heap, length -1 for null
+ *   int heap length, byte[] heap
+ * Every column is padded to a multiple of 4 bytes.
+ */
+public class SnapshotCache {
+
+	public static final int MAGIC = 0x50534D41; // "AMSP" in little-endian
+	public static final int VERSION = 2;
+
+	private static final int HEADER_SIZE = 32;
+
+	// magic, version and checksum, checked before the rest of the file is read
+	private static final int STAMP_SIZE = 16;
+
+	private final File cacheFile;
+	private final File[] sources;
+	private AirportTable airports;
+	private RouteTable routes;
+
+	/*
+	 * @param cacheFile - where the snapshot is stored
+	 * @param sources - text files the snapshot is built from
+	 */
+	public SnapshotCache(File cacheFile, File... sources) {
+		this.cacheFile = cacheFile;
+		this.sources = sources;
+	}
+
+	public AirportTable getAirports() {
+		return airports;
+	}
+
+	public RouteTable getRoutes() {
+		return routes;
+	}
+
+	/*
+	 * CRC32 over the contents of the files, or -1 if one of them
+	 * is not a regular file (e.g. data loaded from a URL).
+	 */
+	public static long checksum(File... files) throws IOException {
+		CRC32 crc = new CRC32();
+		for (File file : files) {
+			if (file == null || !file.isFile()) {
+				return -1;
+			}
+			try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+				long size = channel.size();
+				for (long position = 0; position < size; position += Integer.MAX_VALUE) {
+					crc.update(channel.map(FileChannel.MapMode.READ_ONLY, position,
+							Math.min(Integer.MAX_VALUE, size - position)));
+				}
+			}
+		}
+		return crc.getValue();
+	}
+
+	/*
+	 * Reads the tables from the snapshot.
+	 *
+	 * @return false if there is no usable snapshot for the current source files
+	 */
+	public boolean read() {
+		airports = null;
+		routes = null;
+		if (!cacheFile.isFile()) {
+			return false;
+		}
+		try (FileChannel channel = FileChannel.open(cacheFile.toPath(), StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+				return false;
+			}
+			ByteBuffer stamp = ByteBuffer.allocate(STAMP_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			readFully(channel, stamp);
+			if (stamp.getInt() != MAGIC || stamp.getInt() != VERSION) {
+				return false;
+			}
+			long checksum = stamp.getLong();
+			if (checksum == -1 || checksum != checksum(sources)) {
+				return false;
+			}
+
+			// the columns are copied out of a heap buffer, no mapping of the snapshot outlives the read
+			ByteBuffer buffer = ByteBuffer.allocate((int) size - STAMP_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			readFully(channel, buffer);
+			int airportCount = buffer.getInt();
+			int routeCount = buffer.getInt();
+			int airlineCount = buffer.getInt();
+			int equipmentCount = buffer.getInt();
+
+			int[] id = new int[airportCount];
+			float[] lat = new float[airportCount];
+			float[] lon = new float[airportCount];
+			short[] altitude = new short[airportCount];
+			readInts(buffer, id);
+			readFloats(buffer, lat);
+			readFloats(buffer, lon);
+			buffer.asShortBuffer().get(altitude);
+			skip(buffer, 2 * airportCount);
+
+			int[] sourceId = new int[routeCount];
+			int[] destId = new int[routeCount];
+			int[] airline = new int[routeCount];
+			int[] equipment = new int[routeCount];
+			byte[] stops = new byte[routeCount];
+			readInts(buffer, sourceId);
+			readInts(buffer, destId);
+			readInts(buffer, airline);
+			readInts(buffer, equipment);
+			buffer.get(stops);
+			skip(buffer, 0);
+
+			int[] counts = {airportCount, airportCount, airportCount, airportCount, airlineCount, equipmentCount};
+			int[][] starts = new int[6][];
+			int[][] lengths = new int[6][];
+			for (int c = 0; c < 6; c++) {
+				int count = counts[c];
+				starts[c] = new int[count];
+				lengths[c] = new int[count];
+				readInts(buffer, starts[c]);
+				readInts(buffer, lengths[c]);
+			}
+			byte[] heap = new byte[buffer.getInt()];
+			buffer.get(heap);
+
+			// cities and countries go straight from the heap bytes into one dictionary,
+			// names and codes stay slices of the heap
+			StringDictionary places = new StringDictionary();
+			airports = new AirportTable(airportCount, id, lat, lon, altitude,
+					new TextColumn(heap, starts[0], lengths[0], airportCount),
+					codes(heap, starts[1], lengths[1], places), codes(heap, starts[2], lengths[2], places),
+					places, new TextColumn(heap, starts[3], lengths[3], airportCount));
+			routes = new RouteTable(routeCount, airline, sourceId, destId, stops, equipment,
+					dictionary(heap, starts[4], lengths[4]), dictionary(heap, starts[5], lengths[5]));
+			return true;
+		} catch (IOException | RuntimeException e) {
+			// a truncated or corrupt snapshot is rebuilt like a stale one
+			System.err.println("Ignoring snapshot " + cacheFile + ": " + e);
+			airports = null;
+			routes = null;
+			return false;
+		}
+	}
+
+	/*
+	 * Writes the tables to the snapshot. The file is written next to the
+	 * snapshot and moved over it, so a reader never sees half a snapshot.
+	 * Failing to write only costs the next launch a parse, so errors are
+	 * reported and otherwise ignored.
+	 */
+	public void write(AirportTable airportTable, RouteTable routeTable) {
+		try {
+			long checksum = checksum(sources);
+			if (checksum == -1) {
+				return;
+			}
+			int airportCount = airportTable.size();
+			int routeCount = routeTable.size();
+			int airlineCount = routeTable.getAirlines().size();
+			int equipmentCount = routeTable.getEquipments().size();
+
+			ByteArrayOutputStream heap = new ByteArrayOutputStream();
+			int[] counts = {airportCount, airportCount, airportCount, airportCount, airlineCount, equipmentCount};
+			int[][] starts = new int[6][];
+			int[][] lengths = new int[6][];
+			for (int c = 0; c < 6; c++) {
+				int count = counts[c];
+				starts[c] = new int[count];
+				lengths[c] = new int[count];
+				for (int row = 0; row < count; row++) {
+					String value = stringColumn(airportTable, routeTable, c, row);
+					if (value == null) {
+						lengths[c][row] = -1;
+						continue;
+					}
+					byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+					starts[c][row] = heap.size();
+					lengths[c][row] = bytes.length;
+					heap.write(bytes, 0, bytes.length);
+				}
+			}
+
+			int size = HEADER_SIZE
+					+ 12 * airportCount + padded(2 * airportCount)
+					+ 16 * routeCount + padded(routeCount)
+					+ 32 * airportCount + 8 * (airlineCount + equipmentCount)
+					+ 4 + heap.size();
+			ByteBuffer buffer = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+			buffer.putInt(MAGIC).putInt(VERSION).putLong(checksum);
+			buffer.putInt(airportCount).putInt(routeCount).putInt(airlineCount).putInt(equipmentCount);
+
+			for (int row = 0; row < airportCount; row++) {
+				buffer.putInt(airportTable.getId(row));
+			}
+			for (int row = 0; row < airportCount; row++) {
+				buffer.putFloat(airportTable.getLat(row));
+			}
+			for (int row = 0; row < airportCount; row++) {
+				buffer.putFloat(airportTable.getLon(row));
+			}
+			for (int row = 0; row < airportCount; row++) {
+				buffer.putShort((short) airportTable.getAltitude(row));
+			}
+			pad(buffer);
+
+			for (int row = 0; row < routeCount; row++) {
+				buffer.putInt(routeTable.getSourceId(row));
+			}
+			for (int row = 0; row < routeCount; row++) {
+				buffer.putInt(routeTable.getDestId(row));
+			}
+			for (int row = 0; row < routeCount; row++) {
+				buffer.putInt(routeTable.getAirlineCode(row));
+			}
+			for (int row = 0; row < routeCount; row++) {
+				buffer.putInt(routeTable.getEquipmentCode(row));
+			}
+			for (int row = 0; row < routeCount; row++) {
+				buffer.put((byte) routeTable.getStops(row));
+			}
+			pad(buffer);
+
+			for (int c = 0; c < 6; c++) {
+				buffer.asIntBuffer().put(starts[c]);
+				buffer.position(buffer.position() + 4 * starts[c].length);
+				buffer.asIntBuffer().put(lengths[c]);
+				buffer.position(buffer.position() + 4 * lengths[c].length);
+			}
+			buffer.putInt(heap.size());
+			buffer.put(heap.toByteArray());
+			buffer.flip();
+
+			File temp = new File(cacheFile.getPath() + ".tmp");
+			try (FileChannel channel = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE,
+					StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+				while (buffer.hasRemaining()) {
+					channel.write(buffer);
+				}
+			}
+			Files.move(temp.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		} catch (IOException e) {
+			System.err.println("Could not write snapshot " + cacheFile + ": " + e);
+		}
+	}
+
+	private static String stringColumn(AirportTable airportTable, RouteTable routeTable, int column, int index) {
+		switch (column) {
+		case 0:
+			return airportTable.getName(index);
+		case 1:
+			return airportTable.getCity(index);
+		case 2:
+			return airportTable.getCountry(index);
+		case 3:
+			return airportTable.getCode(index);
+		case 4:
+			return routeTable.getAirlines().get(index);
+		default:
+			return routeTable.getEquipments().get(index);
+		}
+	}
+
+	// adds the strings to the dictionary and returns their codes, -1 for null
+	private static int[] codes(byte[] heap, int[] starts, int[] lengths, StringDictionary dictionary) {
+		int[] codes = new int[starts.length];
+		for (int i = 0; i < codes.length; i++) {
+			codes[i] = lengths[i] >= 0 ? dictionary.add(heap, starts[i], lengths[i]) : -1;
+		}
+		return codes;
+	}
+
+	// rebuilds a dictionary, the codes follow the order the values are added in
+	private static StringDictionary dictionary(byte[] heap, int[] starts, int[] lengths) {
+		StringDictionary dictionary = new StringDictionary();
+		for (int i = 0; i < starts.length; i++) {
+			dictionary.add(heap, starts[i], lengths[i]);
+		}
+		return dictionary;
+	}
+
+	// fills the buffer from the channel and flips it for reading
+	private static void readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer) < 0) {
+				throw new IOException("Snapshot ends early");
+			}
+		}
+		buffer.flip();
+	}
+
+	private static void readInts(ByteBuffer buffer, int[] values) {
+		buffer.asIntBuffer().get(values);
+		buffer.position(buffer.position() + 4 * values.length);
+	}
+
+	private static void readFloats(ByteBuffer buffer, float[] values) {
+		buffer.asFloatBuffer().get(values);
+		buffer.position(buffer.position() + 4 * values.length);
+	}
+
+	// moves past bytes that were read through a view buffer and the padding after them
+	private static void skip(ByteBuffer buffer, int bytes) {
+		buffer.position(padded(buffer.position() + bytes));
+	}
+
+	private static void pad(ByteBuffer buffer) {
+		while ((buffer.position() & 3) != 0) {
+			buffer.put((byte) 0);
+		}
+	}
+
+	private static int padded(int bytes) {
+		return (bytes + 3) & ~3;
+	}
+}
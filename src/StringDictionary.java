@@ -0,0 +1,162 @@
+package parsing;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Maps strings to dense int codes, 0, 1, 2, ... in order of first appearance.
+ *
+ * Columns with few distinct values (airlines, aircraft, countries) store
+ * the codes instead of one String per row. Values can be added straight
+ * from UTF-8 bytes, so a value that is already known costs a hash and a
+ * comparison but no String.
+ *
+ * Like a TextColumn, the dictionary only keeps the UTF-8 bytes of its
+ * values, back to back in one array; get() decodes a value when it is
+ * asked for and getChars() copies it without a String.
+ */
+public class StringDictionary {
+
+	// value of code c is bytes[start[c], start[c+1])
+	private byte[] bytes = new byte[1024];
+	private int[] start = new int[65];
+	private int[] hashes = new int[64];
+	private int size;
+
+	// open addressing table of code + 1, 0 for an empty slot
+	private int[] slots = new int[128];
+
+	public int size() {
+		return size;
+	}
+
+	// the value as a String, built on every call
+	public String get(int code) {
+		return new String(bytes, start[code], getLength(code), StandardCharsets.UTF_8);
+	}
+
+	// number of UTF-8 bytes of the value; the value has at most this many chars
+	public int getLength(int code) {
+		return start[code + 1] - start[code];
+	}
+
+	/*
+	 * Copies the value into dest, which must have getLength(code) chars of room,
+	 * and returns the number of chars written, see TextColumn.getChars().
+	 */
+	public int getChars(int code, char[] dest, int destStart) {
+		int from = start[code];
+		int count = getLength(code);
+		for (int i = 0; i < count; i++) {
+			byte b = bytes[from + i];
+			if (b < 0) {
+				String value = get(code);
+				value.getChars(0, value.length(), dest, destStart);
+				return value.length();
+			}
+			dest[destStart + i] = (char) b;
+		}
+		return count;
+	}
+
+	public int add(String value) {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		return add(bytes, 0, bytes.length);
+	}
+
+	/*
+	 * Returns the code of the string whose UTF-8 bytes are bytes[offset, offset+length),
+	 * adding it if it is new.
+	 */
+	public int add(byte[] bytes, int offset, int length) {
+		int hash = hash(bytes, offset, length);
+		int mask = slots.length - 1;
+		int slot = hash & mask;
+		while (slots[slot] != 0) {
+			int code = slots[slot] - 1;
+			if (hashes[code] == hash && equals(code, bytes, offset, length)) {
+				return code;
+			}
+			slot = (slot + 1) & mask;
+		}
+
+		if (size == hashes.length) {
+			start = Arrays.copyOf(start, size * 2 + 1);
+			hashes = Arrays.copyOf(hashes, size * 2);
+		}
+		int code = size++;
+		int end = start[code];
+		if (end + length > this.bytes.length) {
+			this.bytes = Arrays.copyOf(this.bytes, Math.max(this.bytes.length * 2, end + length));
+		}
+		System.arraycopy(bytes, offset, this.bytes, end, length);
+		start[code + 1] = end + length;
+		hashes[code] = hash;
+		slots[slot] = code + 1;
+		if (size * 2 > slots.length) {
+			rehash();
+		}
+		return code;
+	}
+
+	// returns the code of the value, or -1 if it is not in the dictionary
+	public int find(String value) {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		int hash = hash(bytes, 0, bytes.length);
+		int mask = slots.length - 1;
+		for (int slot = hash & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+			int code = slots[slot] - 1;
+			if (hashes[code] == hash && equals(code, bytes, 0, bytes.length)) {
+				return code;
+			}
+		}
+		return -1;
+	}
+
+	/*
+	 * Adds every value of other and returns, for each code of other,
+	 * the code of the same value in this dictionary.
+	 */
+	public int[] merge(StringDictionary other) {
+		int[] remap = new int[other.size];
+		for (int code = 0; code < other.size; code++) {
+			remap[code] = add(other.bytes, other.start[code], other.getLength(code));
+		}
+		return remap;
+	}
+
+	private void rehash() {
+		slots = new int[slots.length * 2];
+		int mask = slots.length - 1;
+		for (int code = 0; code < size; code++) {
+			int slot = hashes[code] & mask;
+			while (slots[slot] != 0) {
+				slot = (slot + 1) & mask;
+			}
+			slots[slot] = code + 1;
+		}
+	}
+
+	private static int hash(byte[] bytes, int offset, int length) {
+		int hash = 1;
+		for (int i = offset; i < offset + length; i++) {
+			hash = 31 * hash + bytes[i];
+		}
+		// spread the bits, the table uses the low ones
+		return hash ^ (hash >>> 16);
+	}
+
+	// true if the value of the code is bytes[offset, offset+length)
+	private boolean equals(int code, byte[] other, int offset, int length) {
+		if (getLength(code) != length) {
+			return false;
+		}
+		int from = start[code];
+		for (int i = 0; i < length; i++) {
+			if (bytes[from + i] != other[offset + i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -0,0 +1,180 @@
+package parsing;
+
+import java.util.Arrays;
+
+import processing.core.PApplet;
+
+/**
+ * Declares which fields of a CSV file to load and as what type.
+ *
+ * A schema lists the columns to keep, each with the field it comes from
+ * and its type: INT and FLOAT are decoded straight from the bytes of the
+ * row, STRING is dictionary-encoded so repeated values are stored once,
+ * and TEXT, for values that are mostly distinct such as names, keeps the
+ * UTF-8 bytes of the row in a TextColumn.
+ * Fields that are not declared are skipped without creating anything.
+ * A schema can also end in a series, a run of numeric fields such as one
+ * value per year, which is kept in one float matrix.
+ *
+ * Missing values (empty, \N or ..) and numbers that cannot be parsed
+ * load as nulls, see ColumnTable.
+ *
+ * Schemas are built by chaining, e.g.
+ *   new TableSchema().intColumn("id", 0).floatColumn("lat", 6).load(p, "airports.dat")
+ */
+public class TableSchema {
+
+	public enum Type { INT, FLOAT, STRING, TEXT }
+
+	private String[] names = new String[8];
+	private int[] fields = new int[8];
+	private Type[] types = new Type[8];
+	private int columnCount;
+
+	private boolean header;
+	private boolean optionalHeader;
+	private String seriesName;
+	private int seriesField = -1;
+
+	// the first row of the file names the fields, series labels are taken from it
+	public TableSchema header() {
+		header = true;
+		return this;
+	}
+
+	// the first row is a header if the first field of the series is not a number
+	public TableSchema optionalHeader() {
+		optionalHeader = true;
+		return this;
+	}
+
+	public TableSchema intColumn(String name, int field) {
+		return column(name, field, Type.INT);
+	}
+
+	public TableSchema floatColumn(String name, int field) {
+		return column(name, field, Type.FLOAT);
+	}
+
+	public TableSchema stringColumn(String name, int field) {
+		return column(name, field, Type.STRING);
+	}
+
+	public TableSchema textColumn(String name, int field) {
+		return column(name, field, Type.TEXT);
+	}
+
+	/*
+	 * Keeps the fields from firstField to the end of the row as a float series.
+	 * With a header, the series is as wide as the header and every entry is
+	 * labelled with the number its header field starts with (e.g. the year
+	 * of "1960 [YR1960]"); without one it is as wide as the first row.
+	 */
+	public TableSchema series(String name, int firstField) {
+		seriesName = name;
+		seriesField = firstField;
+		return this;
+	}
+
+	private TableSchema column(String name, int field, Type type) {
+		if (columnCount == names.length) {
+			names = Arrays.copyOf(names, columnCount * 2);
+			fields = Arrays.copyOf(fields, columnCount * 2);
+			types = Arrays.copyOf(types, columnCount * 2);
+		}
+		names[columnCount] = name;
+		fields[columnCount] = field;
+		types[columnCount] = type;
+		columnCount++;
+		return this;
+	}
+
+	public int columnCount() {
+		return columnCount;
+	}
+
+	public String getName(int column) {
+		return names[column];
+	}
+
+	public int getField(int column) {
+		return fields[column];
+	}
+
+	public Type getType(int column) {
+		return types[column];
+	}
+
+	public boolean hasHeader() {
+		return header;
+	}
+
+	// name of the series, or null if the schema has none
+	public String getSeriesName() {
+		return seriesName;
+	}
+
+	public int getSeriesField() {
+		return seriesField;
+	}
+
+	/*
+	 * Loads a file with this schema.
+	 *
+	 * @param p - PApplet being used
+	 * @param fileName - file name or URL for data source
+	 */
+	public ColumnTable load(PApplet p, String fileName) {
+		return load(CsvTokenizer.open(p, fileName));
+	}
+
+	/*
+	 * Loads every row of a tokenizer with this schema.
+	 *
+	 * @param csv - tokenizer positioned before the first row
+	 */
+	public ColumnTable load(CsvTokenizer csv) {
+		ColumnTable table = new ColumnTable(this);
+		if ((header || optionalHeader) && csv.nextRow()) {
+			if (header || !isNumber(csv, seriesField)) {
+				table.setSeriesLabels(seriesLabels(csv));
+			} else {
+				table.addRow(csv);
+			}
+		}
+		while (csv.nextRow()) {
+			table.addRow(csv);
+		}
+		return table;
+	}
+
+	// true if the field is missing or a number
+	private static boolean isNumber(CsvTokenizer csv, int field) {
+		if (field < 0 || csv.isMissing(field)) {
+			return true;
+		}
+		try {
+			csv.getDouble(field);
+			return true;
+		} catch (NumberFormatException e) {
+			return false;
+		}
+	}
+
+	// the numbers the header fields of the series start with, or their positions if they have none
+	private int[] seriesLabels(CsvTokenizer csv) {
+		if (seriesField < 0) {
+			return null;
+		}
+		int[] labels = new int[Math.max(0, csv.fieldCount() - seriesField)];
+		for (int i = 0; i < labels.length; i++) {
+			String label = csv.getString(seriesField + i).trim();
+			int end = 0;
+			while (end < label.length() && end < 9 && Character.isDigit(label.charAt(end))) {
+				end++;
+			}
+			labels[i] = end > 0 ? Integer.parseInt(label.substring(0, end)) : i;
+		}
+		return labels;
+	}
+}
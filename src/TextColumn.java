@@ -0,0 +1,133 @@
+package parsing;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A column of strings that are mostly distinct, e.g. airport names.
+ *
+ * Dictionary encoding only pays off for values that repeat; a column of
+ * names would still hold one String per row. A text column keeps the UTF-8
+ * bytes of all values back to back in one byte array, each row a start and
+ * a length into it, -1 for null. Values can be copied into a char array
+ * without building a String, see getChars().
+ */
+public class TextColumn {
+
+	private static final int NULL_LENGTH = -1;
+
+	private byte[] bytes;
+	private int[] start;
+	private int[] length;
+	private int size;
+
+	// bytes[0, used) hold values, new values are appended after them
+	private int used;
+
+	public TextColumn() {
+		this(1024);
+	}
+
+	public TextColumn(int capacity) {
+		capacity = Math.max(capacity, 16);
+		bytes = new byte[capacity * 16];
+		start = new int[capacity];
+		length = new int[capacity];
+	}
+
+	/*
+	 * Wraps values that were read in bulk, e.g. from a snapshot; the arrays are not copied.
+	 *
+	 * @param bytes - UTF-8 bytes the values are slices of
+	 * @param start, length - slice of row r, length -1 for null
+	 */
+	public TextColumn(byte[] bytes, int[] start, int[] length, int size) {
+		this.bytes = bytes;
+		this.start = start;
+		this.length = length;
+		this.size = size;
+		this.used = bytes.length;
+	}
+
+	// appends the value whose UTF-8 bytes are bytes[offset, offset+count)
+	public void add(byte[] source, int offset, int count) {
+		int row = grow();
+		if (used + count > bytes.length) {
+			bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, used + count));
+		}
+		System.arraycopy(source, offset, bytes, used, count);
+		length[row] = count;
+		used += count;
+	}
+
+	public void add(String value) {
+		if (value == null) {
+			addNull();
+			return;
+		}
+		byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+		add(utf8, 0, utf8.length);
+	}
+
+	// appends the value of a row of another column
+	public void add(TextColumn source, int row) {
+		if (source.isNull(row)) {
+			addNull();
+		} else {
+			add(source.bytes, source.start[row], source.length[row]);
+		}
+	}
+
+	public void addNull() {
+		length[grow()] = NULL_LENGTH;
+	}
+
+	// makes room for a new row, its value starts after all values so far
+	private int grow() {
+		if (size == start.length) {
+			start = Arrays.copyOf(start, Math.max(16, size * 2));
+			length = Arrays.copyOf(length, Math.max(16, size * 2));
+		}
+		int row = size++;
+		start[row] = used;
+		return row;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isNull(int row) {
+		return length[row] == NULL_LENGTH;
+	}
+
+	// number of UTF-8 bytes of the value, -1 for null; the value has at most this many chars
+	public int getLength(int row) {
+		return length[row];
+	}
+
+	// the value as a String, built on every call, or null
+	public String getString(int row) {
+		return isNull(row) ? null : new String(bytes, start[row], length[row], StandardCharsets.UTF_8);
+	}
+
+	/*
+	 * Copies the value into dest, which must have getLength(row) chars of room,
+	 * and returns the number of chars written; 0 for null. ASCII values, most
+	 * of the data, are widened byte by byte; others are decoded by the JDK.
+	 */
+	public int getChars(int row, char[] dest, int destStart) {
+		int from = start[row];
+		int count = Math.max(0, length[row]);
+		for (int i = 0; i < count; i++) {
+			byte b = bytes[from + i];
+			if (b < 0) {
+				String value = getString(row);
+				value.getChars(0, value.length(), dest, destStart);
+				return value.length();
+			}
+			dest[destStart + i] = (char) b;
+		}
+		return count;
+	}
+}
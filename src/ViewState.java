@@ -0,0 +1,59 @@
+package module6;
+
+import de.fhpotsdam.unfolding.UnfoldingMap;
+import de.fhpotsdam.unfolding.geo.Location;
+
+/**
+ * A version counter for what the map currently shows.
+ *
+ * update() compares the map's zoom, center and size with the values of
+ * the last call and bumps the version when any of them changed; event
+ * handlers call touch() when the hover or click state changes. Anything
+ * derived from the view (visible airports and routes, info box strings)
+ * only needs to be recomputed when the version is different from the one
+ * it was computed for.
+ */
+public class ViewState {
+
+	private float zoom = Float.NaN;
+	private float centerLat = Float.NaN;
+	private float centerLon = Float.NaN;
+	private float mapWidth = Float.NaN;
+	private float mapHeight = Float.NaN;
+	private int screenWidth = -1;
+	private int screenHeight = -1;
+	private long version;
+
+	/*
+	 * Reads the view of the map and bumps the version if it changed.
+	 *
+	 * @return true if the version was bumped
+	 */
+	public boolean update(UnfoldingMap map, int screenWidth, int screenHeight) {
+		Location center = map.getCenter();
+		float z = map.getZoom();
+		if (z == zoom && center.getLat() == centerLat && center.getLon() == centerLon
+				&& map.getWidth() == mapWidth && map.getHeight() == mapHeight
+				&& screenWidth == this.screenWidth && screenHeight == this.screenHeight) {
+			return false;
+		}
+		zoom = z;
+		centerLat = center.getLat();
+		centerLon = center.getLon();
+		mapWidth = map.getWidth();
+		mapHeight = map.getHeight();
+		this.screenWidth = screenWidth;
+		this.screenHeight = screenHeight;
+		version++;
+		return true;
+	}
+
+	// bumps the version for changes the map doesn't know about, like hovering
+	public void touch() {
+		version++;
+	}
+
+	public long getVersion() {
+		return version;
+	}
+}
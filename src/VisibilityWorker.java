@@ -0,0 +1,312 @@
+package module6;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+
+import parsing.AirportTable;
+
+/**
+ * Computes what the map shows for a view on a background thread.
+ *
+ * The drawing thread describes every new view in an immutable View and
+ * passes it to request(); a single worker thread then works out the level
+ * of detail, the airports inside the map, the routes between displayed
+ * airports, the screen positions of all airports in one batch (see
+ * ScreenPositions), the hover and click grids, the screen lines of the routes
+ * (which also serve the highlights) and the info box strings, all into a
+ * Visibility buffer. Requests that come
+ * in while the worker is busy are coalesced, only the latest view is
+ * computed next.
+ *
+ * There are no locks. A finished buffer is published through an atomic
+ * reference and take() hands it to the drawing thread, which owns it from
+ * then on and gives its previous buffer back with recycle(); the worker
+ * fills the buffers it gets back, so neither thread ever sees the other
+ * one writing. The masks read by the markers are taken over with
+ * BitMask.swap(), which makes the handover constant time.
+ */
+public class VisibilityWorker {
+
+	// size of the cells of the hover and the route grid, in pixels
+	private static final float HOVER_CELL = 16;
+	private static final float ROUTE_CELL = 32;
+
+	/** A view of the map and the data it shows, fixed when it is requested */
+	public static class View {
+		public final long version;
+		public final int zoomLevel;
+
+		// geographic bounds and screen area of the map, and its screen transform
+		public final float south;
+		public final float north;
+		public final float west;
+		public final float east;
+		public final float left;
+		public final float top;
+		public final float width;
+		public final float height;
+		public final MapProjection projection;
+
+		// the loaded data, routes are null until they are loaded
+		public final FlightLoader.AirportSnapshot airports;
+		public final FlightLoader.RouteSnapshot routes;
+
+		/*
+		 * @param projection - transform of the view, not changed afterwards
+		 */
+		public View(long version, int zoomLevel, float south, float north, float west, float east,
+				float left, float top, float width, float height, MapProjection projection,
+				FlightLoader.AirportSnapshot airports, FlightLoader.RouteSnapshot routes) {
+			this.version = version;
+			this.zoomLevel = zoomLevel;
+			this.south = south;
+			this.north = north;
+			this.west = west;
+			this.east = east;
+			this.left = left;
+			this.top = top;
+			this.width = width;
+			this.height = height;
+			this.projection = projection;
+			this.airports = airports;
+			this.routes = routes;
+		}
+	}
+
+	/**
+	 * What is visible in a view. Written by the worker only until it is
+	 * published, read by the drawing thread only after take().
+	 */
+	public static class Visibility {
+		public View view;
+
+		// airports of the level of detail, inside the map, both of these,
+		// and route pairs with both airports displayed (null without routes)
+		public BitMask airportShown;
+		public BitMask airportInView;
+		public BitMask airportDisplayed;
+		public BitMask routeShown;
+
+		public final ScreenGrid hoverGrid = new ScreenGrid(HOVER_CELL);
+		public final SegmentGrid routeGrid = new SegmentGrid(ROUTE_CELL);
+		public final RouteLines routeLines = new RouteLines();
+
+		// screen positions of all airports in the view, for the drawing thread as well
+		public ScreenPositions airportPositions;
+
+		public String zoomInfo;
+		public String displayInfo;
+		public String topAirportsInfo;
+
+		// time the worker took for this view
+		public long computeNanos;
+
+		// rows of the query buffers, kept for the next view
+		private final IntList insideRows = new IntList();
+		private final IntList topRows = new IntList();
+	}
+
+	private final ArcCache arcCache;
+	private final int topAirportsListed;
+
+	private final ExecutorService executor;
+	private final AtomicReference<View> pending = new AtomicReference<View>();
+	private final AtomicReference<Visibility> ready = new AtomicReference<Visibility>();
+	private final AtomicReference<Visibility> spare = new AtomicReference<Visibility>();
+
+	/*
+	 * @param arcCacheBytes - memory the great-circle arcs of the worker may take
+	 * @param topAirportsListed - how many of the best ranked airports to list
+	 */
+	public VisibilityWorker(long arcCacheBytes, int topAirportsListed) {
+		this.arcCache = new ArcCache(arcCacheBytes);
+		this.topAirportsListed = topAirportsListed;
+		this.executor = Executors.newSingleThreadExecutor(task -> {
+			Thread thread = new Thread(task, "visibility");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	// asks for the visibility of a view, returns right away
+	public void request(View view) {
+		if (pending.getAndSet(view) == null) {
+			executor.execute(this::run);
+		}
+	}
+
+	// the latest finished visibility not taken yet, or null
+	public Visibility take() {
+		return ready.getAndSet(null);
+	}
+
+	// gives back a visibility the drawing thread no longer reads, to be filled again
+	public void recycle(Visibility visibility) {
+		spare.set(visibility);
+	}
+
+	// computes the pending view until no newer one came in meanwhile
+	private void run() {
+		View view;
+		do {
+			view = pending.get();
+			try {
+				publish(compute(view));
+			} catch (RuntimeException e) {
+				System.err.println("Could not compute the visible airports: " + e);
+			}
+		} while (!pending.compareAndSet(view, null));
+	}
+
+	private void publish(Visibility visibility) {
+		// a result that was never taken is filled again next time
+		Visibility stale = ready.getAndSet(visibility);
+		if (stale != null) {
+			spare.compareAndSet(null, stale);
+		}
+	}
+
+	private Visibility compute(View view) {
+		long start = System.nanoTime();
+		Visibility v = spare.getAndSet(null);
+		if (v == null) {
+			v = new Visibility();
+		}
+		v.view = view;
+		int airportCount = view.airports.table.size();
+		if (v.airportShown == null || v.airportShown.size() != airportCount) {
+			v.airportShown = new BitMask(airportCount);
+			v.airportInView = new BitMask(airportCount);
+			v.airportDisplayed = new BitMask(airportCount);
+		}
+		if (view.routes != null && (v.routeShown == null || v.routeShown.size() != view.routes.markers.size())) {
+			v.routeShown = new BitMask(view.routes.markers.size());
+		}
+
+		showLevelOfDetail(view, v);
+		projectAirports(view, v);
+		cullAirports(view, v);
+		indexHoverTargets(view, v);
+		if (view.routes != null) {
+			// route rows are the pair graph's edges
+			view.routes.pairs.getGraph().selectEdges(v.airportDisplayed, v.routeShown);
+			layoutRoutes(view, v);
+		} else {
+			v.routeGrid.clear(view.left, view.top, view.width, view.height);
+			v.routeGrid.build();
+			v.routeLines.clear();
+		}
+
+		v.zoomInfo = "Zoom Level: " + Integer.toString(view.zoomLevel);
+		v.displayInfo = String.format("%d out of %d airports displayed on the map",
+				v.airportDisplayed.cardinality(), v.airportInView.cardinality());
+		v.topAirportsInfo = view.routes != null ? getTopAirportsInfo(view, v) : "Top airports: waiting for routes";
+		v.computeNanos = System.nanoTime() - start;
+		return v;
+	}
+
+	// shows the airports of the level of detail of the zoom level
+	private void showLevelOfDetail(View view, Visibility v) {
+		LodPyramid lod = view.routes != null ? view.routes.lodPyramid : view.airports.lodPyramid;
+		lod.show(view.zoomLevel, v.airportShown);
+	}
+
+	// finds the airports whose coordinates are inside the map
+	private void cullAirports(View view, Visibility v) {
+		AirportGrid grid = view.routes != null ? view.routes.grid : view.airports.grid;
+		grid.cull(view.south, view.north, view.west, view.east, v.insideRows, v.airportInView);
+
+		// past the antimeridian the grid wraps the longitudes but the projection does not,
+		// so airports it finds there are drawn off the map and are left out
+		float right = view.left + view.width;
+		float bottom = view.top + view.height;
+		for (int i = 0; i < v.insideRows.size(); i++) {
+			int row = v.insideRows.get(i);
+			if (!v.airportPositions.isInside(row, view.left, view.top, right, bottom)) {
+				v.airportInView.clear(row);
+			}
+		}
+
+		// displayed means not hidden and inside the map
+		v.airportDisplayed.copyFrom(v.airportInView);
+		v.airportDisplayed.and(v.airportShown);
+	}
+
+	// projects all airports to the screen of the view in one batch
+	private void projectAirports(View view, Visibility v) {
+		if (v.airportPositions == null || v.airportPositions.size() != view.airports.mercatorX.length) {
+			v.airportPositions = new ScreenPositions(view.airports.mercatorX, view.airports.mercatorY);
+		}
+		v.airportPositions.update(view.projection);
+	}
+
+	// puts the screen positions of the displayed airports into the hover grid
+	private void indexHoverTargets(View view, Visibility v) {
+		v.hoverGrid.index(view.left, view.top, view.width, view.height, v.airportDisplayed, v.airportPositions);
+	}
+
+	// puts the shown routes as great-circle arcs on the screen into the route grid
+	// for picking and into the route lines for drawing
+	private void layoutRoutes(View view, Visibility v) {
+		AirportTable table = view.airports.table;
+		RoutePairs pairs = view.routes.pairs;
+		RouteGraph graph = pairs.getGraph();
+		v.routeGrid.clear(view.left, view.top, view.width, view.height);
+		v.routeLines.clear();
+		for (int a = v.airportDisplayed.nextSetBit(0); a >= 0; a = v.airportDisplayed.nextSetBit(a + 1)) {
+			for (int e = v.routeShown.nextSetBit(graph.firstEdge(a));
+					e >= 0 && e < graph.endEdge(a); e = v.routeShown.nextSetBit(e + 1)) {
+				int b = graph.target(e);
+				float[] arc = arcCache.get(e, view.zoomLevel, table.getLat(a), table.getLon(a),
+						table.getLat(b), table.getLon(b));
+				int weightClass = weightClass(pairs.getMultiplicity(e));
+				int firstLine = v.routeLines.lineCount(weightClass);
+				addArc(view.projection, v, e, arc, 0, weightClass);
+
+				// an arc across the antimeridian is drawn again from the other side of the world
+				float end = arc[arc.length - 2];
+				if (end < 0 || end >= 1) {
+					addArc(view.projection, v, e, arc, end < 0 ? 1 : -1, weightClass);
+				}
+				v.routeLines.markRoute(e, weightClass, firstLine);
+			}
+		}
+		v.routeGrid.build();
+	}
+
+	// stroke weight class of a pair: 1 route, 2-3, 4-7 or 8 and more
+	private static int weightClass(int multiplicity) {
+		return Math.min(RouteLines.WEIGHT_CLASSES - 1, 31 - Integer.numberOfLeadingZeros(multiplicity));
+	}
+
+	// adds the segments of an arc, moved by shift world widths, to the route grid and lines
+	private static void addArc(MapProjection projection, Visibility v, int route, float[] arc,
+			float shift, int weightClass) {
+		float x = projection.screenX(arc[0] + shift);
+		float y = projection.screenY(arc[1]);
+		for (int i = 2; i < arc.length; i += 2) {
+			float nextX = projection.screenX(arc[i] + shift);
+			float nextY = projection.screenY(arc[i + 1]);
+			v.routeGrid.add(route, x, y, nextX, nextY);
+			v.routeLines.addLine(weightClass, x, y, nextX, nextY);
+			x = nextX;
+			y = nextY;
+		}
+	}
+
+	// returns the codes of the highest ranked airports inside the map
+	private String getTopAirportsInfo(View view, Visibility v) {
+		v.topRows.clear();
+		view.routes.grid.queryTop(view.south, view.north, view.west, view.east, topAirportsListed, v.topRows);
+
+		StringBuilder info = new StringBuilder("Top airports: ");
+		for (int i = 0; i < v.topRows.size(); i++) {
+			if (i > 0) {
+				info.append(", ");
+			}
+			info.append(view.airports.table.getLabel(v.topRows.get(i)));
+		}
+		return info.toString();
+	}
+}
@@ -0,0 +1,131 @@
+package parsing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+public class AirportTableTest {
+
+	@Test
+	public void addedAirportsKeepTheirColumns() {
+		AirportTable table = new AirportTable(1);
+		for (int i = 0; i < 40; i++) {
+			table.addAirport(100 + i, i, -i, 1000 * i, "Name " + i, "City", "Country " + (i % 3), "C" + i);
+		}
+		assertEquals(40, table.size());
+		assertEquals(139, table.getId(39));
+		assertEquals(39f, table.getLat(39), 0);
+		assertEquals(-39f, table.getLon(39), 0);
+		// altitudes are clamped to a short
+		assertEquals(Short.MAX_VALUE, table.getAltitude(39));
+		assertEquals("Name 7", table.getName(7));
+		assertEquals("City", table.getCity(7));
+		assertEquals("Country 1", table.getCountry(7));
+		assertEquals("C7", table.getCode(7));
+		// one place per distinct city and country
+		assertEquals(4, table.getPlaces().size());
+	}
+
+	@Test
+	public void titlesLeaveOutMissingParts() {
+		AirportTable table = new AirportTable();
+		table.addAirport(1, 0, 0, 0, "Goroka", "Goroka", "Papua New Guinea", "GKA");
+		table.addAirport(2, 0, 0, 0, "Nowhere", null, "Iceland", null);
+		table.addAirport(3, 0, 0, 0, null, "Zürich", null, "ZRH");
+		assertEquals("Goroka, Goroka, Papua New Guinea", table.getTitle(0));
+		assertEquals("Nowhere, Iceland", table.getTitle(1));
+		assertEquals("Zürich", table.getTitle(2));
+		assertEquals("", table.getName(2));
+		String titles = new String(table.getTitleChars(), 0, table.getTitleEnd(2));
+		assertEquals("Nowhere, Iceland", titles.substring(table.getTitleStart(1), table.getTitleEnd(1)));
+	}
+
+	@Test
+	public void labelIsTheCodeOrTheName() {
+		AirportTable table = new AirportTable();
+		table.addAirport(1, 0, 0, 0, "Goroka", null, null, "GKA");
+		table.addAirport(2, 0, 0, 0, "Nowhere", null, null, null);
+		assertEquals("GKA", table.getLabel(0));
+		assertEquals("Nowhere", table.getLabel(1));
+		assertNull(table.getCode(1));
+	}
+
+	@Test
+	public void rowsAreFoundById() {
+		AirportTable table = new AirportTable();
+		table.addAirport(5000, 0, 0, 0, "A", null, null, null);
+		table.addAirport(3, 0, 0, 0, "B", null, null, null);
+		assertEquals(0, table.rowOf(5000));
+		assertEquals(1, table.rowOf(3));
+		assertEquals(-1, table.rowOf(4));
+		assertEquals(-1, table.rowOf(-1));
+		assertEquals(-1, table.rowOf(100000));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void duplicateIdIsRejected() {
+		AirportTable table = new AirportTable();
+		table.addAirport(1, 0, 0, 0, "A", null, null, null);
+		table.addAirport(1, 0, 0, 0, "B", null, null, null);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void negativeIdIsRejected() {
+		new AirportTable().addAirport(-1, 0, 0, 0, "A", null, null, null);
+	}
+
+	@Test
+	public void bulkColumnsMatchAddedAirports() {
+		StringDictionary places = new StringDictionary();
+		int[] city = {places.add("Goroka"), -1};
+		int[] country = {places.add("Papua New Guinea"), places.add("Iceland")};
+		AirportTable table = bulk(new int[] {7, 2}, city, country, places);
+		assertEquals(2, table.size());
+		assertEquals(1, table.rowOf(2));
+		assertEquals("Name 0, Goroka, Papua New Guinea", table.getTitle(0));
+		assertEquals("Name 1, Iceland", table.getTitle(1));
+		assertEquals("C1", table.getCode(1));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void bulkDuplicateIdIsRejected() {
+		bulk(new int[] {4, 4}, new int[] {-1, -1}, new int[] {-1, -1}, new StringDictionary());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void bulkNegativeIdIsRejected() {
+		bulk(new int[] {4, -2}, new int[] {-1, -1}, new int[] {-1, -1}, new StringDictionary());
+	}
+
+	@Test
+	public void parsedRowsWithoutIdOrCoordinatesAreSkipped() {
+		String text = "1,\"Goroka\",\"Goroka\",\"Papua New Guinea\",\"GKA\",\"AYGA\",-6.08,145.39,5282\n"
+				+ "\\N,\"No id\",\"\",\"\",\"\",\"\",1,1,1\n"
+				+ "3,\"No lat\",\"\",\"\",\"\",\"\",\\N,1,1\n"
+				+ "4,\"ICAO only\",\"Reykjavik\",\"Iceland\",\"\",\"BIRK\",64.13,-21.94,48\n";
+		AirportTable table = ParseFeed.parseAirportTable(
+				new CsvTokenizer(ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8))));
+		assertEquals(2, table.size());
+		assertEquals("GKA", table.getLabel(0));
+		assertEquals("BIRK", table.getCode(1));
+		assertEquals(5282, table.getAltitude(0));
+		assertEquals(-6.08f, table.getLat(0), 0);
+	}
+
+	// a table of airports "Name i" with code "Ci", built from columns
+	private static AirportTable bulk(int[] id, int[] city, int[] country, StringDictionary places) {
+		int n = id.length;
+		TextColumn names = new TextColumn();
+		TextColumn codes = new TextColumn();
+		for (int i = 0; i < n; i++) {
+			names.add("Name " + i);
+			codes.add("C" + i);
+		}
+		return new AirportTable(n, id, new float[n], new float[n], new short[n],
+				names, city, country, places, codes);
+	}
+}
@@ -0,0 +1,132 @@
+package module6;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class BitMaskTest {
+
+	@Test
+	public void singleBits() {
+		BitMask mask = new BitMask(130);
+		mask.set(0);
+		mask.set(64);
+		mask.set(129);
+		mask.set(5, true);
+		mask.set(5, false);
+		assertTrue(mask.get(0));
+		assertTrue(mask.get(64));
+		assertTrue(mask.get(129));
+		assertFalse(mask.get(5));
+		assertFalse(mask.get(63));
+		mask.clear(64);
+		assertFalse(mask.get(64));
+		assertEquals(2, mask.cardinality());
+	}
+
+	@Test
+	public void setAllStopsAtTheSize() {
+		BitMask mask = new BitMask(70);
+		mask.setAll();
+		assertEquals(70, mask.cardinality());
+		assertEquals(69, lastSetBit(mask));
+		mask.clearAll();
+		assertEquals(0, mask.cardinality());
+		assertEquals(-1, mask.nextSetBit(0));
+	}
+
+	@Test
+	public void rangesMatchBitSet() {
+		Random random = new Random(1);
+		for (int i = 0; i < 500; i++) {
+			int size = 1 + random.nextInt(300);
+			int from = random.nextInt(size + 1);
+			int to = from + random.nextInt(size - from + 1);
+			BitMask mask = new BitMask(size);
+			mask.setRange(from, to);
+			BitSet expected = new BitSet();
+			expected.set(from, to);
+			assertSame(expected, mask);
+		}
+	}
+
+	@Test
+	public void nextSetBitWalksAllBits() {
+		BitMask mask = new BitMask(300);
+		int[] bits = {3, 63, 64, 127, 200, 299};
+		for (int bit : bits) {
+			mask.set(bit);
+		}
+		int i = 0;
+		for (int b = mask.nextSetBit(0); b >= 0; b = mask.nextSetBit(b + 1)) {
+			assertEquals(bits[i++], b);
+		}
+		assertEquals(bits.length, i);
+		assertEquals(-1, mask.nextSetBit(300));
+	}
+
+	@Test
+	public void andOrCopyAndSwap() {
+		BitMask a = new BitMask(100);
+		BitMask b = new BitMask(100);
+		a.setRange(0, 50);
+		b.setRange(40, 100);
+		BitMask c = new BitMask(100);
+		c.copyFrom(a);
+		c.and(b);
+		assertEquals(10, c.cardinality());
+		assertEquals(40, c.nextSetBit(0));
+		c.copyFrom(a);
+		c.or(b);
+		assertEquals(100, c.cardinality());
+
+		a.swap(b);
+		assertEquals(40, a.nextSetBit(0));
+		assertEquals(0, b.nextSetBit(0));
+		assertEquals(50, b.cardinality());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void swapNeedsTheSameSize() {
+		new BitMask(10).swap(new BitMask(11));
+	}
+
+	@Test
+	public void andGatherReadsThroughTheIndex() {
+		// bit i of the result is kept if source has bit index[i]
+		BitMask source = new BitMask(10);
+		source.set(2);
+		source.set(7);
+		int[] index = new int[200];
+		for (int i = 0; i < index.length; i++) {
+			index[i] = i % 10;
+		}
+		BitMask mask = new BitMask(200);
+		mask.setAll();
+		mask.clear(7);
+		mask.andGather(source, index);
+		for (int i = 0; i < 200; i++) {
+			assertEquals("bit " + i, i != 7 && (i % 10 == 2 || i % 10 == 7), mask.get(i));
+		}
+	}
+
+	private static void assertSame(BitSet expected, BitMask mask) {
+		assertEquals(expected.cardinality(), mask.cardinality());
+		for (int i = 0; i < mask.size(); i++) {
+			assertEquals("bit " + i, expected.get(i), mask.get(i));
+		}
+	}
+
+	private static int lastSetBit(BitMask mask) {
+		int last = -1;
+		for (int b = mask.nextSetBit(0); b >= 0; b = mask.nextSetBit(b + 1)) {
+			last = b;
+		}
+		return last;
+	}
+}
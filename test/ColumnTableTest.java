@@ -0,0 +1,90 @@
+package parsing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+public class ColumnTableTest {
+
+	private static ColumnTable load(TableSchema schema, String text) {
+		return schema.load(new CsvTokenizer(ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8))));
+	}
+
+	@Test
+	public void nullsAreKeptApartFromValues() {
+		ColumnTable table = load(new TableSchema().intColumn("i", 0).floatColumn("f", 1),
+				"-2147483648,1.5\n\\N,\n..,\"..\"\n");
+		assertEquals(3, table.size());
+		assertFalse(table.isNull(0, 0));
+		assertEquals(Integer.MIN_VALUE, table.getInt(0, 0));
+		assertEquals(1.5f, table.getFloat(1, 0), 0);
+		for (int row = 1; row < 3; row++) {
+			assertTrue(table.isNull(0, row));
+			assertTrue(table.isNull(1, row));
+			assertTrue(Float.isNaN(table.getFloat(1, row)));
+		}
+	}
+
+	@Test
+	public void badNumbersLoadAsNull() {
+		ColumnTable table = load(new TableSchema().intColumn("i", 0).floatColumn("f", 1).intColumn("j", 2),
+				"abc,x,1\n99999999999,1e,2\n3,4,5\n");
+		assertEquals(3, table.size());
+		assertTrue(table.isNull(0, 0));
+		assertTrue(table.isNull(1, 0));
+		assertTrue(table.isNull(0, 1));
+		assertTrue(table.isNull(1, 1));
+		assertEquals(2, table.getInt(2, 1));
+		assertEquals(3, table.getInt(0, 2));
+	}
+
+	@Test
+	public void nullBitsFollowManyRows() {
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < 5000; i++) {
+			text.append(i % 3 == 0 ? "\\N" : Integer.toString(i)).append('\n');
+		}
+		ColumnTable table = load(new TableSchema().intColumn("i", 0), text.toString());
+		for (int i = 0; i < 5000; i++) {
+			assertEquals(i % 3 == 0, table.isNull(0, i));
+			if (i % 3 != 0) {
+				assertEquals(i, table.getInt(0, i));
+			}
+		}
+	}
+
+	@Test
+	public void stringsAndTexts() {
+		ColumnTable table = load(new TableSchema().stringColumn("s", 0).textColumn("t", 1),
+				"a,one\nb,\\N\na,three\n\\N,four\n");
+		assertEquals(table.getCode(0, 0), table.getCode(0, 2));
+		assertEquals(2, table.getDictionary(0).size());
+		assertEquals("b", table.getString(0, 1));
+		assertTrue(table.isNull(0, 3));
+		assertEquals(ColumnTable.NULL_CODE, table.getCode(0, 3));
+		assertNull(table.getString(0, 3));
+		assertTrue(table.isNull(1, 1));
+		assertEquals("three", table.getString(1, 2));
+	}
+
+	@Test
+	public void seriesIsLabelledFromTheHeader() {
+		ColumnTable table = load(new TableSchema().header().stringColumn("country", 0).series("years", 1),
+				"Country,1960 [YR1960],1961 [YR1961],1962\nA,1,..,x\nB,4,5,6\n");
+		assertEquals(3, table.seriesWidth());
+		assertEquals(1961, table.getSeriesLabel(1));
+		assertEquals(1962, table.getSeriesLabel(2));
+		assertEquals(1f, table.getSeries(0, 0), 0);
+		assertTrue(Float.isNaN(table.getSeries(0, 1)));
+		// a value that is not a number is missing, not an error
+		assertTrue(Float.isNaN(table.getSeries(0, 2)));
+		assertEquals(0, table.lastInSeries(0));
+		assertEquals(2, table.lastInSeries(1));
+	}
+}
@@ -0,0 +1,181 @@
+package parsing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+public class CsvTokenizerTest {
+
+	private static CsvTokenizer tokenize(String text) {
+		return new CsvTokenizer(ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)));
+	}
+
+	// a tokenizer on its first row
+	private static CsvTokenizer row(String text) {
+		CsvTokenizer csv = tokenize(text);
+		assertTrue(csv.nextRow());
+		return csv;
+	}
+
+	@Test
+	public void quotedFieldsKeepCommasAndDoubledQuotes() {
+		CsvTokenizer csv = row("1,\"Port Moresby, Jacksons\",\"say \"\"hi\"\"\",x\n");
+		assertEquals(4, csv.fieldCount());
+		assertEquals(1, csv.getInt(0));
+		assertEquals("Port Moresby, Jacksons", csv.getString(1));
+		assertEquals("say \"hi\"", csv.getString(2));
+		assertEquals("x", csv.getString(3));
+	}
+
+	@Test
+	public void blankLinesAreSkippedAndLastRowNeedsNoNewline() {
+		CsvTokenizer csv = tokenize("a,b\r\n\r\n\nc,d");
+		assertTrue(csv.nextRow());
+		assertEquals("b", csv.getString(1));
+		assertTrue(csv.nextRow());
+		assertEquals("c", csv.getString(0));
+		assertEquals("d", csv.getString(1));
+		assertFalse(csv.nextRow());
+	}
+
+	@Test
+	public void missingValues() {
+		CsvTokenizer csv = row("\\N,\"\\N\",,..,\"..\",0\n");
+		assertTrue(csv.isNull(0));
+		assertFalse(csv.isNull(1));
+		assertTrue(csv.isEmpty(2));
+		assertTrue(csv.isMissing(0));
+		assertFalse(csv.isMissing(1));
+		assertTrue(csv.isMissing(2));
+		assertTrue(csv.isMissing(3));
+		assertTrue(csv.isMissing(4));
+		assertFalse(csv.isMissing(5));
+		// fields past the end of the row are missing too
+		assertTrue(csv.isMissing(6));
+		assertTrue(csv.isNull(6));
+	}
+
+	@Test
+	public void intRange() {
+		CsvTokenizer csv = row("2147483647,-2147483648,+12,-0, 7 \n");
+		assertEquals(Integer.MAX_VALUE, csv.getInt(0));
+		assertEquals(Integer.MIN_VALUE, csv.getInt(1));
+		assertEquals(12, csv.getInt(2));
+		assertEquals(0, csv.getInt(3));
+		assertEquals(7, csv.getInt(4));
+	}
+
+	@Test(expected = NumberFormatException.class)
+	public void intOverflowIsReported() {
+		row("2147483648\n").getInt(0);
+	}
+
+	@Test(expected = NumberFormatException.class)
+	public void negativeIntOverflowIsReported() {
+		row("-2147483649\n").getInt(0);
+	}
+
+	@Test(expected = NumberFormatException.class)
+	public void longDigitRunIsReported() {
+		row("99999999999999999999\n").getInt(0);
+	}
+
+	@Test(expected = NumberFormatException.class)
+	public void signAloneIsNotAnInt() {
+		row("-\n").getInt(0);
+	}
+
+	@Test
+	public void doubles() {
+		CsvTokenizer csv = row("-6.081689,1.5e3,2E-2,.5,145,1e400\n");
+		assertEquals(-6.081689, csv.getDouble(0), 1e-12);
+		assertEquals(1500, csv.getDouble(1), 0);
+		assertEquals(0.02, csv.getDouble(2), 1e-15);
+		assertEquals(0.5, csv.getDouble(3), 0);
+		assertEquals(145f, csv.getFloat(4), 0);
+		assertEquals(Double.POSITIVE_INFINITY, csv.getDouble(5), 0);
+	}
+
+	@Test(expected = NumberFormatException.class)
+	public void textIsNotADouble() {
+		row("abc\n").getDouble(0);
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void intPastTheRowIsRejected() {
+		// the second row is shorter, its third field must not be read from the first row
+		CsvTokenizer csv = tokenize("1,2,3\n4\n");
+		csv.nextRow();
+		csv.nextRow();
+		csv.getInt(2);
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void stringPastTheRowIsRejected() {
+		row("a,b\n").getString(2);
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void doublePastTheRowIsRejected() {
+		row("1\n").getDouble(1);
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void negativeFieldIsRejected() {
+		row("1\n").getString(-1);
+	}
+
+	@Test
+	public void codesComeFromTheDictionary() {
+		StringDictionary dictionary = new StringDictionary();
+		CsvTokenizer csv = tokenize("AA,BA\nBA,AA\n");
+		csv.nextRow();
+		assertEquals(0, csv.getCode(0, dictionary));
+		assertEquals(1, csv.getCode(1, dictionary));
+		csv.nextRow();
+		assertEquals(1, csv.getCode(0, dictionary));
+		assertEquals(0, csv.getCode(1, dictionary));
+		assertEquals(2, dictionary.size());
+	}
+
+	@Test
+	public void channelRowsSpanReads() {
+		// rows longer than the row buffer and than one read of the channel
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < 5000; i++) {
+			text.append(i).append(",\"").append("name ").append(i).append("\"\n");
+		}
+		StringBuilder longField = new StringBuilder();
+		for (int i = 0; i < 100000; i++) {
+			longField.append('x');
+		}
+		text.append("5000,").append(longField).append('\n');
+		CsvTokenizer csv = new CsvTokenizer(Channels.newChannel(
+				new ByteArrayInputStream(text.toString().getBytes(StandardCharsets.UTF_8))));
+		for (int i = 0; i < 5000; i++) {
+			assertTrue(csv.nextRow());
+			assertEquals(i, csv.getInt(0));
+			assertEquals("name " + i, csv.getString(1));
+		}
+		assertTrue(csv.nextRow());
+		assertEquals(longField.toString(), csv.getString(1));
+		assertFalse(csv.nextRow());
+	}
+
+	@Test
+	public void readsBetweenPositionAndLimit() {
+		ByteBuffer bytes = ByteBuffer.wrap("skip\n1,2\nrest".getBytes(StandardCharsets.UTF_8));
+		bytes.position(5).limit(9);
+		CsvTokenizer csv = new CsvTokenizer(bytes);
+		assertTrue(csv.nextRow());
+		assertEquals(2, csv.getInt(1));
+		assertFalse(csv.nextRow());
+	}
+}
@@ -0,0 +1,118 @@
+package parsing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import de.fhpotsdam.unfolding.data.PointFeature;
+
+public class EarthquakeReaderTest {
+
+	private static String entry(String id, String updated, String title, String point, String elev) {
+		return "<entry><id>" + id + "</id><updated>" + updated + "</updated><title>" + title + "</title>"
+				+ "<georss:point>" + point + "</georss:point>"
+				+ (elev != null ? "<georss:elev>" + elev + "</georss:elev>" : "")
+				+ "<category label=\"Age\" term=\"Past Day\"/></entry>";
+	}
+
+	private static String feed(String... entries) {
+		StringBuilder xml = new StringBuilder("<?xml version=\"1.0\"?>"
+				+ "<feed xmlns=\"http://www.w3.org/2005/Atom\" xmlns:georss=\"http://www.georss.org/georss\">"
+				+ "<title>quakes</title><updated>2026-01-02T00:00:00Z</updated>");
+		for (String entry : entries) {
+			xml.append(entry);
+		}
+		return xml.append("</feed>").toString();
+	}
+
+	private static List<PointFeature> read(EarthquakeReader reader, String xml) {
+		List<PointFeature> features = new ArrayList<PointFeature>();
+		reader.read(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)), features::add);
+		return features;
+	}
+
+	private static final String A = entry("a", "2026-01-01T10:00:00Z", "M 4.6 - 10km SW of Town", "10.5 -20.25", "-10230");
+	private static final String B = entry("b", "2026-01-01T11:00:00Z", "M 2.1, Somewhere", "1 2", null);
+	private static final String C = entry("c", "2026-01-01T11:00:00Z", "Quarry blast", "3 4", "abc");
+	private static final String D = entry("d", "2026-01-01T12:00:00Z", "M 5.0 - Sea", "5 6", "0");
+	private static final String OLD = entry("old", "2026-01-01T09:00:00Z", "M 1.0 - Old", "7 8", "0");
+
+	@Test
+	public void entriesBecomeFeatures() {
+		List<PointFeature> features = read(new EarthquakeReader(), feed(A, B, C));
+		assertEquals(3, features.size());
+		PointFeature a = features.get(0);
+		assertEquals(10.5f, a.getLocation().getLat(), 0);
+		assertEquals(-20.25f, a.getLocation().getLon(), 0);
+		assertEquals(4.6f, (Float) a.getProperty("magnitude"), 0);
+		assertEquals(10.2f, (Float) a.getProperty("depth"), 1e-6);
+		assertEquals("Past Day", a.getProperty("age"));
+		assertEquals(2.1f, (Float) features.get(1).getProperty("magnitude"), 0);
+		// a depth that is missing or not a number is 0, a title without one has no magnitude
+		assertEquals(0f, (Float) features.get(1).getProperty("depth"), 0);
+		assertEquals(0f, (Float) features.get(2).getProperty("depth"), 0);
+		assertNull(features.get(2).getProperty("magnitude"));
+	}
+
+	@Test
+	public void entryWithoutLocationIsSkipped() {
+		String noPoint = "<entry><id>x</id><updated>2026-01-01T10:00:00Z</updated><title>M 1</title></entry>";
+		assertEquals(1, read(new EarthquakeReader(), feed(noPoint, A)).size());
+	}
+
+	@Test
+	public void incrementalReadsOnlyReturnNewEntries() {
+		EarthquakeReader reader = new EarthquakeReader();
+		reader.setIncremental(true);
+		assertEquals(2, read(reader, feed(A, B)).size());
+		assertEquals(Instant.parse("2026-01-01T11:00:00Z").toEpochMilli(), reader.getLastUpdated());
+
+		// the same feed again has nothing new
+		assertEquals(0, read(reader, feed(A, B)).size());
+
+		// a new entry at the watermark is returned once, older ones never
+		List<PointFeature> features = read(reader, feed(D, C, B, A, OLD));
+		assertEquals(2, features.size());
+		assertEquals("M 5.0 - Sea", features.get(0).getProperty("title"));
+		assertEquals("Quarry blast", features.get(1).getProperty("title"));
+		assertEquals(Instant.parse("2026-01-01T12:00:00Z").toEpochMilli(), reader.getLastUpdated());
+		assertEquals(0, read(reader, feed(D, C, B, A)).size());
+	}
+
+	@Test
+	public void watermarkMovesAfterTheWholeFeed() {
+		// entries of one feed are not compared with each other, whatever their order
+		EarthquakeReader reader = new EarthquakeReader();
+		reader.setIncremental(true);
+		assertEquals(3, read(reader, feed(D, A, OLD)).size());
+		assertEquals(Instant.parse("2026-01-01T12:00:00Z").toEpochMilli(), reader.getLastUpdated());
+	}
+
+	@Test
+	public void readsWithoutIncrementalModeReturnEverything() {
+		EarthquakeReader reader = new EarthquakeReader();
+		assertEquals(2, read(reader, feed(A, B)).size());
+		assertEquals(2, read(reader, feed(A, B)).size());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void brokenFeedIsReported() {
+		read(new EarthquakeReader(), "<feed><entry><id>a</id>");
+	}
+
+	@Test
+	public void magnitude() {
+		assertEquals(4.6f, EarthquakeReader.parseMagnitude("M 4.6 - 10km SW of Town"), 0);
+		assertEquals(3f, EarthquakeReader.parseMagnitude("  M  3,  Somewhere"), 0);
+		assertTrue(Float.isNaN(EarthquakeReader.parseMagnitude("Quarry blast")));
+		assertTrue(Float.isNaN(EarthquakeReader.parseMagnitude("M ? - unknown")));
+	}
+}
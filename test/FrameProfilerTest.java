@@ -0,0 +1,93 @@
+package module6;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import org.junit.Test;
+
+public class FrameProfilerTest {
+
+	// the lines of the exported histograms after the header
+	private static String[] export(FrameProfiler profiler) throws IOException {
+		StringWriter out = new StringWriter();
+		profiler.writeHistograms(out);
+		String[] lines = out.toString().split("\\R");
+		assertEquals("phase,from_ns,to_ns,count,percentile", lines[0]);
+		String[] buckets = new String[lines.length - 1];
+		System.arraycopy(lines, 1, buckets, 0, buckets.length);
+		return buckets;
+	}
+
+	@Test
+	public void smallTimingsHaveExactBuckets() throws IOException {
+		FrameProfiler profiler = new FrameProfiler("draw");
+		profiler.record(0, 5);
+		profiler.record(0, 5);
+		profiler.record(0, 31);
+		String[] buckets = export(profiler);
+		assertEquals(2, buckets.length);
+		assertEquals("draw,5,6,2,0.666667", buckets[0]);
+		assertEquals("draw,31,32,1,1.000000", buckets[1]);
+	}
+
+	@Test
+	public void largeTimingsHaveSixteenBucketsPerPowerOfTwo() throws IOException {
+		FrameProfiler profiler = new FrameProfiler("draw");
+		profiler.record(0, 100);
+		profiler.record(0, 103);
+		profiler.record(0, 104);
+		profiler.record(0, 1_000_000);
+		String[] buckets = export(profiler);
+		assertEquals(3, buckets.length);
+		assertEquals("draw,100,104,2,0.500000", buckets[0]);
+		assertEquals("draw,104,108,1,0.750000", buckets[1]);
+		// a bucket is within 1/16 of its start
+		String[] last = buckets[2].split(",");
+		long from = Long.parseLong(last[1]);
+		long to = Long.parseLong(last[2]);
+		assertTrue(from <= 1_000_000 && 1_000_000 < to);
+		assertTrue(to - from <= from / 16);
+	}
+
+	@Test
+	public void extremeTimingsHaveBuckets() throws IOException {
+		FrameProfiler profiler = new FrameProfiler("draw");
+		profiler.record(0, -3);
+		profiler.record(0, Long.MAX_VALUE);
+		String[] buckets = export(profiler);
+		assertEquals("draw,0,1,1,0.500000", buckets[0]);
+		assertTrue(buckets[1].endsWith("," + Long.MAX_VALUE + ",1,1.000000"));
+	}
+
+	@Test
+	public void phasesAreExportedSeparately() throws IOException {
+		FrameProfiler profiler = new FrameProfiler("map", "info");
+		profiler.record(1, 7);
+		profiler.record(0, 9);
+		String[] buckets = export(profiler);
+		assertEquals("map,9,10,1,1.000000", buckets[0]);
+		assertEquals("info,7,8,1,1.000000", buckets[1]);
+	}
+
+	@Test
+	public void percentilesOfTheLastTimings() {
+		FrameProfiler profiler = new FrameProfiler("draw");
+		assertEquals(0, profiler.percentile(0, 0.5));
+		for (int i = 1; i <= 100; i++) {
+			profiler.record(0, i);
+		}
+		assertEquals(50, profiler.percentile(0, 0.5));
+		assertEquals(99, profiler.percentile(0, 0.99));
+		assertEquals(1, profiler.percentile(0, 0));
+		assertEquals(100, profiler.percentile(0, 1));
+
+		// only the last CAPACITY timings count
+		for (int i = 0; i < FrameProfiler.CAPACITY; i++) {
+			profiler.record(0, 1000);
+		}
+		assertEquals(1000, profiler.percentile(0, 0));
+	}
+}
@@ -0,0 +1,128 @@
+package module6;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import parsing.AirportTable;
+import parsing.RouteTable;
+
+public class RoutePairsTest {
+
+	private AirportTable airports;
+	private RouteTable routes;
+	private RoutePairs pairs;
+
+	// airports 0 to 3; rows of the routes are their indexes in the arrays
+	private static final String[] AIRLINES = {"AA", "BA", "AA", "LH", null, "BA"};
+	private static final int[] SOURCES = {0, 1, 0, 3, 3, 2};
+	private static final int[] DESTS = {1, 0, 1, 1, 1, 2};
+
+	@Before
+	public void setUp() {
+		airports = new AirportTable();
+		for (int row = 0; row < 4; row++) {
+			airports.addAirport(10 + row, 0, row, 0, "Airport " + row, null, null, "A" + row);
+		}
+		routes = new RouteTable();
+		int[] tableRows = new int[SOURCES.length];
+		for (int i = 0; i < SOURCES.length; i++) {
+			tableRows[i] = routes.addRoute(AIRLINES[i], 10 + SOURCES[i], 10 + DESTS[i], 0, null);
+		}
+		pairs = new RoutePairs(4, routes, tableRows, SOURCES, DESTS, SOURCES.length);
+	}
+
+	@Test
+	public void routesCollapseIntoSortedPairs() {
+		assertEquals(3, pairs.pairCount());
+		assertPair(0, 0, 1);
+		assertPair(1, 1, 3);
+		assertPair(2, 2, 2);
+		assertEquals(3, pairs.getMultiplicity(0));
+		assertEquals(2, pairs.getMultiplicity(1));
+		assertEquals(1, pairs.getMultiplicity(2));
+		assertEquals(0, pairs.pairOf(1));
+		assertEquals(1, pairs.pairOf(4));
+		assertEquals(2, pairs.pairOf(5));
+	}
+
+	@Test
+	public void directionsAreAggregated() {
+		assertEquals(RoutePairs.LOW_TO_HIGH | RoutePairs.HIGH_TO_LOW, pairs.getDirections(0));
+		assertEquals(RoutePairs.HIGH_TO_LOW, pairs.getDirections(1));
+		assertEquals(RoutePairs.LOW_TO_HIGH, pairs.getDirections(2));
+	}
+
+	@Test
+	public void airlinesAreDistinct() {
+		// AA twice and BA between 0 and 1, LH and one without an airline between 1 and 3
+		assertEquals(2, pairs.getAirlineCount(0));
+		assertEquals(1, pairs.getAirlineCount(1));
+		assertEquals("LH", routes.getAirlines().get(pairs.getAirlineCode(1, 0)));
+	}
+
+	@Test
+	public void routesOfAPairAreListed() {
+		int[] rows = new int[pairs.getMultiplicity(0)];
+		for (int i = 0; i < rows.length; i++) {
+			rows[i] = pairs.getRoute(0, i);
+		}
+		assertArrayEquals(new int[] {0, 1, 2}, rows);
+	}
+
+	@Test
+	public void pairsAreIncidentToBothAirports() {
+		assertArrayEquals(new int[] {0}, incident(0));
+		assertArrayEquals(new int[] {0, 1}, incident(1));
+		// a pair of an airport with itself is listed once
+		assertArrayEquals(new int[] {2}, incident(2));
+		assertArrayEquals(new int[] {1}, incident(3));
+	}
+
+	@Test
+	public void graphEdgesArePairs() {
+		RouteGraph graph = pairs.getGraph();
+		BitMask displayed = new BitMask(4);
+		displayed.set(0);
+		displayed.set(1);
+		BitMask shown = new BitMask(3);
+		graph.selectEdges(displayed, shown);
+		assertTrue(shown.get(0));
+		assertFalse(shown.get(1));
+		assertFalse(shown.get(2));
+	}
+
+	@Test
+	public void markersReportOneWayPairsInTheirDirection() {
+		MarkerState state = new MarkerState(pairs.pairCount());
+		RouteMarker bothWays = new RouteMarker(airports, routes, pairs, state, 0, null);
+		assertTrue(bothWays.isBothWays());
+		assertEquals(0, bothWays.getSourceRow());
+		assertEquals(1, bothWays.getDestRow());
+
+		RouteMarker highToLow = new RouteMarker(airports, routes, pairs, state, 1, null);
+		assertFalse(highToLow.isBothWays());
+		assertEquals(3, highToLow.getSourceRow());
+		assertEquals(1, highToLow.getDestRow());
+		assertEquals("13", highToLow.getProperty("source"));
+		assertEquals("11", highToLow.getProperty("destination"));
+		assertEquals("13-11", highToLow.getId());
+	}
+
+	private void assertPair(int pair, int low, int high) {
+		assertEquals(low, pairs.getLow(pair));
+		assertEquals(high, pairs.getHigh(pair));
+	}
+
+	private int[] incident(int airport) {
+		int[] result = new int[pairs.endIncident(airport) - pairs.firstIncident(airport)];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = pairs.incidentPair(pairs.firstIncident(airport) + i);
+		}
+		return result;
+	}
+}
@@ -0,0 +1,73 @@
+package parsing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class RouteTableTest {
+
+	@Test
+	public void airlinesAndEquipmentAreCoded() {
+		RouteTable table = new RouteTable(1);
+		for (int i = 0; i < 20; i++) {
+			table.addRoute(i % 2 == 0 ? "AA" : "BA", i, i + 1, i, i % 4 == 0 ? null : "737 320");
+		}
+		table.addRoute(null, 1, 2, 500, null);
+		assertEquals(21, table.size());
+		assertEquals("BA", table.getAirline(3));
+		assertEquals(table.getAirlineCode(1), table.getAirlineCode(3));
+		assertEquals(2, table.getAirlines().size());
+		assertNull(table.getEquipment(4));
+		assertEquals("737 320", table.getEquipment(5));
+		assertEquals(RouteTable.NO_CODE, table.getEquipmentCode(4));
+		assertEquals(4, table.getSourceId(4));
+		assertEquals(5, table.getDestId(4));
+		assertNull(table.getAirline(20));
+		// stops are kept in a byte
+		assertEquals(Byte.MAX_VALUE, table.getStops(20));
+	}
+
+	@Test
+	public void concatTranslatesCodes() {
+		RouteTable first = new RouteTable();
+		first.addRoute("AA", 1, 2, 0, "737");
+		first.addRoute("BA", 2, 1, 0, null);
+		RouteTable second = new RouteTable();
+		second.addRoute("LH", 3, 4, 1, "320");
+		second.addRoute("AA", 4, 3, 0, "737");
+		second.addRoute(null, 5, 6, 0, "320");
+
+		RouteTable table = RouteTable.concat(Arrays.asList(first, second));
+		assertEquals(5, table.size());
+		assertEquals(3, table.getAirlines().size());
+		assertEquals(2, table.getEquipments().size());
+		assertEquals("LH", table.getAirline(2));
+		assertEquals(table.getAirlineCode(0), table.getAirlineCode(3));
+		assertNull(table.getAirline(4));
+		assertEquals("320", table.getEquipment(4));
+		assertEquals(3, table.getSourceId(2));
+		assertEquals(1, table.getStops(2));
+	}
+
+	@Test
+	public void parsedRowsWithoutAirportIdsAreSkipped() {
+		String text = "2B,410,AER,2965,KZN,2990,,0,CR2\n"
+				+ "2B,410,ASF,\\N,KZN,2990,,0,CR2\n"
+				+ "ZZ,\\N,KZN,2990,ASF,2966,Y,\\N\n";
+		RouteTable table = ParseFeed.parseRouteTable(
+				new CsvTokenizer(ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8))));
+		assertEquals(2, table.size());
+		assertEquals(2965, table.getSourceId(0));
+		assertEquals(2990, table.getDestId(0));
+		assertEquals("CR2", table.getEquipment(0));
+		// short rows have no equipment and missing stops count as none
+		assertEquals("ZZ", table.getAirline(1));
+		assertNull(table.getEquipment(1));
+		assertEquals(0, table.getStops(1));
+	}
+}
@@ -0,0 +1,140 @@
+package parsing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SnapshotCacheTest {
+
+	private static final String AIRPORTS =
+			"1,\"Goroka\",\"Goroka\",\"Papua New Guinea\",\"GKA\",\"AYGA\",-6.081689,145.391881,5282\n"
+			+ "2,\"Keflavik, Intl\",\"Reykjavík\",\"Iceland\",\"\",\"BIKF\",63.985,-22.605556,171\n"
+			+ "3,\"\",\"\",\"\",\"\",\"\",0,0,\\N\n";
+	private static final String ROUTES =
+			"2B,410,AER,1,KZN,2,,0,CR2\n"
+			+ "\\N,410,ASF,2,KZN,1,Y,1\n"
+			+ "LH,410,ASF,3,KZN,1,,0,320 737\n";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File airportFile;
+	private File routeFile;
+	private File cacheFile;
+	private AirportTable airports;
+	private RouteTable routes;
+
+	@Before
+	public void setUp() throws IOException {
+		airportFile = write("airports.dat", AIRPORTS);
+		routeFile = write("routes.dat", ROUTES);
+		cacheFile = new File(folder.getRoot(), "flights.snapshot");
+		airports = ParseFeed.parseAirportTable(tokenize(AIRPORTS));
+		routes = ParseFeed.parseRouteTable(tokenize(ROUTES));
+	}
+
+	@Test
+	public void tablesSurviveTheRoundTrip() {
+		SnapshotCache snapshot = new SnapshotCache(cacheFile, airportFile, routeFile);
+		assertFalse(snapshot.read());
+		snapshot.write(airports, routes);
+		assertTrue(snapshot.read());
+
+		AirportTable a = snapshot.getAirports();
+		assertEquals(airports.size(), a.size());
+		for (int row = 0; row < a.size(); row++) {
+			assertEquals(airports.getId(row), a.getId(row));
+			assertEquals(airports.getLat(row), a.getLat(row), 0);
+			assertEquals(airports.getLon(row), a.getLon(row), 0);
+			assertEquals(airports.getAltitude(row), a.getAltitude(row));
+			assertEquals(airports.getName(row), a.getName(row));
+			assertEquals(airports.getCity(row), a.getCity(row));
+			assertEquals(airports.getCountry(row), a.getCountry(row));
+			assertEquals(airports.getCode(row), a.getCode(row));
+			assertEquals(airports.getTitle(row), a.getTitle(row));
+		}
+		assertEquals(1, a.rowOf(2));
+
+		RouteTable r = snapshot.getRoutes();
+		assertEquals(routes.size(), r.size());
+		for (int row = 0; row < r.size(); row++) {
+			assertEquals(routes.getAirline(row), r.getAirline(row));
+			assertEquals(routes.getAirlineCode(row), r.getAirlineCode(row));
+			assertEquals(routes.getSourceId(row), r.getSourceId(row));
+			assertEquals(routes.getDestId(row), r.getDestId(row));
+			assertEquals(routes.getStops(row), r.getStops(row));
+			assertEquals(routes.getEquipment(row), r.getEquipment(row));
+		}
+	}
+
+	@Test
+	public void snapshotCanBeReplacedAfterReading() {
+		SnapshotCache snapshot = new SnapshotCache(cacheFile, airportFile, routeFile);
+		snapshot.write(airports, routes);
+		assertTrue(snapshot.read());
+		snapshot.write(airports, routes);
+		assertFalse(new File(cacheFile.getPath() + ".tmp").exists());
+		assertTrue(snapshot.read());
+	}
+
+	@Test
+	public void changedSourcesMakeTheSnapshotStale() throws IOException {
+		SnapshotCache snapshot = new SnapshotCache(cacheFile, airportFile, routeFile);
+		snapshot.write(airports, routes);
+		Files.write(routeFile.toPath(), (ROUTES + "AA,1,A,1,B,3,,0,\n").getBytes(StandardCharsets.UTF_8));
+		assertFalse(snapshot.read());
+		assertNull(snapshot.getAirports());
+		assertNull(snapshot.getRoutes());
+	}
+
+	@Test
+	public void otherVersionIsIgnored() throws IOException {
+		SnapshotCache snapshot = new SnapshotCache(cacheFile, airportFile, routeFile);
+		snapshot.write(airports, routes);
+		byte[] bytes = Files.readAllBytes(cacheFile.toPath());
+		bytes[4]++;
+		Files.write(cacheFile.toPath(), bytes);
+		assertFalse(snapshot.read());
+	}
+
+	@Test
+	public void truncatedSnapshotIsIgnored() throws IOException {
+		SnapshotCache snapshot = new SnapshotCache(cacheFile, airportFile, routeFile);
+		snapshot.write(airports, routes);
+		byte[] bytes = Files.readAllBytes(cacheFile.toPath());
+		Files.write(cacheFile.toPath(), Arrays.copyOf(bytes, bytes.length - 10));
+		assertFalse(snapshot.read());
+		assertNull(snapshot.getAirports());
+	}
+
+	@Test
+	public void sourcesThatAreNotFilesAreNotCached() {
+		SnapshotCache snapshot = new SnapshotCache(cacheFile, airportFile, new File(folder.getRoot(), "missing"));
+		snapshot.write(airports, routes);
+		assertFalse(cacheFile.exists());
+		assertFalse(snapshot.read());
+	}
+
+	private File write(String name, String text) throws IOException {
+		File file = folder.newFile(name);
+		Files.write(file.toPath(), text.getBytes(StandardCharsets.UTF_8));
+		return file;
+	}
+
+	private static CsvTokenizer tokenize(String text) {
+		return new CsvTokenizer(ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)));
+	}
+}